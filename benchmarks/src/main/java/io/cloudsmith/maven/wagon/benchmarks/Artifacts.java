@@ -0,0 +1,113 @@
+package io.cloudsmith.maven.wagon.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+
+/**
+ * Creates local artifact files for the benchmarks.
+ */
+public final class Artifacts {
+
+    public static final String GROUP_PATH = "io/cloudsmith/bench";
+    public static final String ARTIFACT_ID = "bench-artifact";
+    public static final String VERSION = "1.0.0";
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final byte[] ZIP_MAGIC = new byte[]{0x50, 0x4b, 0x03, 0x04};
+
+    private Artifacts() {
+        throw new AssertionError("Instantiating utility class.");
+    }
+
+    /**
+     * Get the repository path for a file of the benchmark artifact.
+     */
+    public static String getPath(String filename) {
+        return GROUP_PATH + "/" + ARTIFACT_ID + "/" + VERSION + "/" + filename;
+    }
+
+    /**
+     * Get the filename of the benchmark artifact for a packaging (e.g. jar).
+     */
+    public static String getFilename(String packaging) {
+        return ARTIFACT_ID + "-" + VERSION + "." + packaging;
+    }
+
+    /**
+     * Create the POM for the benchmark artifact.
+     */
+    public static File createPom(Path directory, String packaging) throws IOException {
+        String pom = String.format(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+            + "  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <groupId>%s</groupId>\n"
+            + "  <artifactId>%s</artifactId>\n"
+            + "  <version>%s</version>\n"
+            + "  <packaging>%s</packaging>\n"
+            + "</project>\n",
+            GROUP_PATH.replace('/', '.'), ARTIFACT_ID, VERSION, packaging
+        );
+
+        Path path = directory.resolve(getFilename("pom"));
+        Files.write(path, pom.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+
+    /**
+     * Create an archive (with a ZIP header and random content) of a given size.
+     */
+    public static File createArchive(Path directory, String packaging, long size) throws IOException {
+        Path path = directory.resolve(getFilename(packaging));
+        byte[] block = new byte[BLOCK_SIZE];
+        new Random(size).nextBytes(block);
+        System.arraycopy(ZIP_MAGIC, 0, block, 0, ZIP_MAGIC.length);
+
+        try (OutputStream output = Files.newOutputStream(path)) {
+            long remaining = size;
+            while (remaining > 0) {
+                int count = (int) Math.min(block.length, remaining);
+                output.write(block, 0, count);
+                remaining -= count;
+
+                /* Only the first block has the header. */
+                block[0] = 0;
+            }
+        }
+
+        return path.toFile();
+    }
+
+    /**
+     * Create an (empty) metadata file, which triggers package creation when put.
+     */
+    public static File createMetadata(Path directory) throws IOException {
+        Path path = directory.resolve("maven-metadata.xml");
+        Files.write(path, "<metadata/>\n".getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+
+    /**
+     * Delete a directory of artifacts.
+     */
+    public static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+
+        Files.deleteIfExists(directory);
+    }
+}
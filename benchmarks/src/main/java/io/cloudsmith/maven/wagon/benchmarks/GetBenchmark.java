@@ -0,0 +1,95 @@
+package io.cloudsmith.maven.wagon.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import io.cloudsmith.maven.wagon.CloudsmithWagon;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.repository.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks downloading artifacts from the CDN with the wagon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class GetBenchmark {
+
+    /* From a POM-sized file up to a large WAR. */
+    @Param({"4096", "1048576", "67108864", "1073741824"})
+    private long artifactSize;
+
+    @Param({"jar"})
+    private String packaging;
+
+    @Param({"0"})
+    private long latencyMillis;
+
+    @Param({"0"})
+    private long bandwidthKbps;
+
+    private MockCloudsmith cloudsmith;
+    private CloudsmithWagon wagon;
+    private Path directory;
+    private String path;
+    private File destination;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.cloudsmith = new MockCloudsmith(this.latencyMillis, this.bandwidthKbps);
+        this.cloudsmith.start();
+
+        this.directory = Files.createTempDirectory("cloudsmith-bench-get");
+        File archive = Artifacts.createArchive(this.directory, this.packaging, this.artifactSize);
+        this.path = Artifacts.getPath(archive.getName());
+        this.cloudsmith.addFile(this.path, archive);
+        Files.delete(archive.toPath());
+
+        this.destination = this.directory.resolve("download").toFile();
+
+        AuthenticationInfo authenticationInfo = new AuthenticationInfo();
+        authenticationInfo.setPassword("benchmark");
+
+        this.wagon = new CloudsmithWagon();
+        this.wagon.connect(
+            new Repository("cloudsmith-bench", this.cloudsmith.getRepositoryUrl()),
+            authenticationInfo
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.wagon.disconnect();
+        this.cloudsmith.shutdown();
+        Artifacts.delete(this.directory);
+    }
+
+    /**
+     * Download a single artifact.
+     */
+    @Benchmark
+    public long get() throws Exception {
+        this.wagon.get(this.path, this.destination);
+        return this.destination.length();
+    }
+}
@@ -0,0 +1,209 @@
+package io.cloudsmith.maven.wagon.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.Okio;
+import okio.Source;
+
+
+/**
+ * An in-process stand-in for the Cloudsmith API, S3 and the Cloudsmith CDN.
+ *
+ * <p>Serves just enough of each for the wagon to upload files, create
+ * packages, poll their status and download files. Every response can be
+ * delayed (to simulate latency) and every request and response body can be
+ * throttled (to simulate bandwidth).</p>
+ */
+public class MockCloudsmith {
+
+    public static final String OWNER = "bench-owner";
+    public static final String REPOSITORY = "bench-repo";
+
+    private static final String JSON = "application/json";
+    private static final long THROTTLE_PERIOD_MILLIS = 100;
+
+    private static final Pattern FILES_CREATE = Pattern.compile(
+        "^(/v1)?/files/" + OWNER + "/" + REPOSITORY + "/$"
+    );
+    private static final Pattern PACKAGES_UPLOAD = Pattern.compile(
+        "^(/v1)?/packages/" + OWNER + "/" + REPOSITORY + "/upload/maven/$"
+    );
+    private static final Pattern PACKAGES_STATUS = Pattern.compile(
+        "^(/v1)?/packages/" + OWNER + "/" + REPOSITORY + "/([^/]+)/status/$"
+    );
+    private static final Pattern REPOS_READ = Pattern.compile(
+        "^(/v1)?/repos/" + OWNER + "/" + REPOSITORY + "/$"
+    );
+    private static final Pattern CDN_FILE = Pattern.compile(
+        "^/cdn/" + OWNER + "/" + REPOSITORY + "/maven/(.+)$"
+    );
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, Buffer> files = new ConcurrentHashMap<>();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final long latencyMillis;
+    private final long bytesPerPeriod;
+
+    /**
+     * @param latencyMillis delay before each response is sent
+     * @param bandwidthKbps limit (in kilobytes per second) for request and response bodies, or 0 for none
+     */
+    public MockCloudsmith(long latencyMillis, long bandwidthKbps) {
+        this.latencyMillis = latencyMillis;
+        this.bytesPerPeriod = bandwidthKbps * 1024 * THROTTLE_PERIOD_MILLIS / 1000;
+    }
+
+    public void start() throws IOException {
+        /* Don't hold uploaded files in memory. */
+        this.server.setBodyLimit(0);
+        this.server.setDispatcher(new CloudsmithDispatcher());
+        this.server.start();
+    }
+
+    public void shutdown() throws IOException {
+        this.server.shutdown();
+    }
+
+    /**
+     * Get the repository URL that the wagon should be connected to.
+     */
+    public String getRepositoryUrl() {
+        return "cloudsmith+http://" + this.server.getHostName() + ":" + this.server.getPort()
+            + "/" + OWNER + "/" + REPOSITORY;
+    }
+
+    /**
+     * Serve a local file from the CDN (at a path relative to the repository).
+     */
+    public void addFile(String path, File file) throws IOException {
+        Buffer buffer = new Buffer();
+
+        try (Source source = Okio.source(file)) {
+            buffer.writeAll(source);
+        }
+
+        this.files.put(path, buffer);
+    }
+
+    public long getUploadedBytes() {
+        return this.uploadedBytes.get();
+    }
+
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    // Helpers
+
+    private MockResponse throttle(MockResponse response) {
+        if (this.bytesPerPeriod > 0) {
+            response.throttleBody(this.bytesPerPeriod, THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        return response;
+    }
+
+    private MockResponse json(int code, String body) {
+        return new MockResponse()
+            .setResponseCode(code)
+            .setHeader("Content-Type", JSON)
+            .setBody(body);
+    }
+
+    private String getBaseUrl() {
+        return this.server.url("/").toString().replaceAll("/$", "");
+    }
+
+    /**
+     * Routes requests to the fake API, S3 and CDN.
+     */
+    private final class CloudsmithDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            requestCount.incrementAndGet();
+
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            String path = request.getPath();
+            String method = request.getMethod();
+
+            if ("POST".equals(method) && FILES_CREATE.matcher(path).matches()) {
+                return json(201, String.format(
+                    "{\"identifier\": \"%s\", \"upload_url\": \"%s/s3/\","
+                    + " \"upload_fields\": {\"key\": \"uploads/%<s\"}}",
+                    UUID.randomUUID().toString(), getBaseUrl()
+                ));
+            }
+
+            if ("POST".equals(method) && "/s3/".equals(path)) {
+                uploadedBytes.addAndGet(request.getBodySize());
+                return new MockResponse().setResponseCode(204);
+            }
+
+            if ("POST".equals(method) && PACKAGES_UPLOAD.matcher(path).matches()) {
+                String slug = UUID.randomUUID().toString().substring(0, 8);
+                return json(201, String.format(
+                    "{\"slug\": \"%s\", \"slug_perm\": \"%<s\"}", slug
+                ));
+            }
+
+            if ("GET".equals(method) && PACKAGES_STATUS.matcher(path).matches()) {
+                return json(200,
+                    "{\"is_sync_completed\": true, \"is_sync_failed\": false,"
+                    + " \"status_str\": \"Completed\", \"stage_str\": \"Fully Synchronised\","
+                    + " \"sync_progress\": 100}"
+                );
+            }
+
+            if ("GET".equals(method) && REPOS_READ.matcher(path).matches()) {
+                return json(200, String.format(
+                    "{\"slug\": \"%s\", \"cdn_url\": \"%s/cdn/%s/%s\"}",
+                    REPOSITORY, getBaseUrl(), OWNER, REPOSITORY
+                ));
+            }
+
+            Matcher matcher = CDN_FILE.matcher(path);
+            if (("GET".equals(method) || "HEAD".equals(method)) && matcher.matches()) {
+                Buffer file = files.get(matcher.group(1));
+                if (file == null) {
+                    return new MockResponse().setResponseCode(404);
+                }
+
+                MockResponse response = new MockResponse()
+                    .setResponseCode(200)
+                    .setHeader("Content-Type", "application/octet-stream");
+
+                if ("HEAD".equals(method)) {
+                    return response.setHeader("Content-Length", Long.toString(file.size()));
+                }
+
+                return throttle(response.setBody(file.clone()));
+            }
+
+            return json(404, "{\"detail\": \"Not found.\"}");
+        }
+
+        @Override
+        public MockResponse peek() {
+            /* Used to throttle reading request (upload) bodies. */
+            return throttle(new MockResponse());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.cloudsmith.maven.wagon.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import io.cloudsmith.maven.wagon.CloudsmithWagon;
+
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.repository.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks uploading artifacts (and creating packages) with the wagon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dcloudsmith.sync_wait.verbose=false"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PutBenchmark {
+
+    /* From a POM-sized file up to a large WAR. */
+    @Param({"4096", "1048576", "67108864", "1073741824"})
+    private long artifactSize;
+
+    @Param({"jar"})
+    private String packaging;
+
+    @Param({"0"})
+    private long latencyMillis;
+
+    @Param({"0"})
+    private long bandwidthKbps;
+
+    private MockCloudsmith cloudsmith;
+    private CloudsmithWagon wagon;
+    private Path directory;
+    private File pom;
+    private File archive;
+    private File metadata;
+    private long modified;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        this.cloudsmith = new MockCloudsmith(this.latencyMillis, this.bandwidthKbps);
+        this.cloudsmith.start();
+
+        this.directory = Files.createTempDirectory("cloudsmith-bench-put");
+        this.pom = Artifacts.createPom(this.directory, this.packaging);
+        this.archive = Artifacts.createArchive(this.directory, this.packaging, this.artifactSize);
+        this.metadata = Artifacts.createMetadata(this.directory);
+        this.modified = this.archive.lastModified();
+
+        AuthenticationInfo authenticationInfo = new AuthenticationInfo();
+        authenticationInfo.setPassword("benchmark");
+
+        this.wagon = new CloudsmithWagon();
+        this.wagon.connect(
+            new Repository("cloudsmith-bench", this.cloudsmith.getRepositoryUrl()),
+            authenticationInfo
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.wagon.disconnect();
+        this.cloudsmith.shutdown();
+        Artifacts.delete(this.directory);
+    }
+
+    /**
+     * Put the metadata after each invocation (outside of the measurement), so
+     * that the package is finalised and its session doesn't carry over.
+     */
+    @TearDown(Level.Invocation)
+    public void finalisePackage() throws Exception {
+        this.wagon.put(this.metadata, Artifacts.getPath(this.metadata.getName()));
+    }
+
+    /**
+     * Upload a single artifact.
+     */
+    @Benchmark
+    public void put() throws Exception {
+        touch();
+        this.wagon.put(this.archive, Artifacts.getPath(this.archive.getName()));
+    }
+
+    /**
+     * Upload a POM and an artifact, then create the package (as mvn deploy does).
+     */
+    @Benchmark
+    public void deploy() throws Exception {
+        touch();
+        this.wagon.put(this.pom, Artifacts.getPath(this.pom.getName()));
+        this.wagon.put(this.archive, Artifacts.getPath(this.archive.getName()));
+        this.wagon.put(this.metadata, Artifacts.getPath(this.metadata.getName()));
+    }
+
+    /**
+     * Bump the modification time of the artifact, as if it had been rebuilt,
+     * so that each upload reads and hashes it rather than using cached results.
+     */
+    private void touch() {
+        this.modified += 1000;
+        this.archive.setLastModified(this.modified);
+    }
+}
@@ -0,0 +1,12 @@
+#!/usr/bin/env bash
+self=$(readlink -f $BASH_SOURCE)
+self_dir=$(dirname $self)
+root_dir=$(readlink -f "$self_dir/..")
+
+set -e
+mvn -B -q install -DskipTests -f "$root_dir/pom.xml"
+mvn -B -q package -f "$root_dir/benchmarks/pom.xml"
+java -jar "$root_dir/benchmarks/target/benchmarks.jar" \
+  -prof gc \
+  -rf json -rff "$root_dir/benchmarks/target/jmh-result.json" \
+  "$@"
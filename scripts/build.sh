@@ -7,3 +7,5 @@ api_url=$2
 . $root_dir/scripts/common.sh
 
 mvn compile
+mvn install -DskipTests
+mvn -f $root_dir/transport/pom.xml verify
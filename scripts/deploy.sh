@@ -18,6 +18,7 @@ upload_to_maven_central() {
 upload_to_cloudsmith() {
   echo "Uploading to Cloudsmith ..."
   mvn deploy
+  mvn -f $root_dir/transport/pom.xml deploy
 }
 
 build_distribution
@@ -1,6 +1,8 @@
 
 package io.cloudsmith.maven.wagon;
 
+import java.nio.file.Paths;
+
 public final class Properties {
     //
     // Static Properties
@@ -19,27 +21,168 @@ public final class Properties {
 
     private static final String  API_KEY_ENVVAR                = "CLOUDSMITH_API_KEY";
     private static final String  API_KEY_PROPERTY              = "cloudsmith.api_key";
+    private static final boolean CACHE_ENABLED_DEFAULT         = false;
+    private static final String  CACHE_ENABLED_ENVVAR          = "CLOUDSMITH_CACHE_ENABLED";
+    private static final String  CACHE_ENABLED_PROPERTY        = "cloudsmith.cache.enabled";
+    private static final int     CACHE_MAX_SIZE_DEFAULT        = 1024; // megabytes
+    private static final String  CACHE_MAX_SIZE_ENVVAR         = "CLOUDSMITH_CACHE_MAX_SIZE";
+    private static final String  CACHE_MAX_SIZE_PROPERTY       = "cloudsmith.cache.max_size";
+    private static final String  CACHE_PATH_DEFAULT            = ".cloudsmith/maven-wagon/cache"; // in home
+    private static final String  CACHE_PATH_ENVVAR             = "CLOUDSMITH_CACHE_PATH";
+    private static final String  CACHE_PATH_PROPERTY           = "cloudsmith.cache.path";
+    private static final int     CIRCUIT_COOLDOWN_DEFAULT      = 30; // seconds
+    private static final String  CIRCUIT_COOLDOWN_ENVVAR       = "CLOUDSMITH_CIRCUIT_COOLDOWN";
+    private static final String  CIRCUIT_COOLDOWN_PROPERTY     = "cloudsmith.circuit.cooldown";
+    private static final int     CIRCUIT_THRESHOLD_DEFAULT     = 5;
+    private static final String  CIRCUIT_THRESHOLD_ENVVAR      = "CLOUDSMITH_CIRCUIT_THRESHOLD";
+    private static final String  CIRCUIT_THRESHOLD_PROPERTY    = "cloudsmith.circuit.threshold";
     private static final boolean DEBUG_DEFAULT                 = false;
     private static final String  DEBUG_ENVVAR                  = "CLOUDSMITH_DEBUG";
     private static final String  DEBUG_PROPERTY                = "cloudsmith.debug";
+    private static final boolean DL_RANGED_DEFAULT             = false;
+    private static final String  DL_RANGED_ENVVAR              = "CLOUDSMITH_DOWNLOAD_RANGED";
+    private static final String  DL_RANGED_PROPERTY            = "cloudsmith.download.ranged";
+    private static final int     DL_RANGED_CHUNK_DEFAULT       = 8; // megabytes
+    private static final String  DL_RANGED_CHUNK_ENVVAR        = "CLOUDSMITH_DOWNLOAD_RANGED_CHUNK";
+    private static final String  DL_RANGED_CHUNK_PROPERTY      = "cloudsmith.download.ranged.chunk";
+    private static final int     DL_RANGED_THREADS_DEFAULT     = 4;
+    private static final String  DL_RANGED_THREADS_ENVVAR      = "CLOUDSMITH_DOWNLOAD_RANGED_THREADS";
+    private static final String  DL_RANGED_THREADS_PROPERTY    = "cloudsmith.download.ranged.threads";
+    private static final int     DL_RANGED_THRESHOLD_DEFAULT   = 32; // megabytes
+    private static final String  DL_RANGED_THRESHOLD_ENVVAR    = "CLOUDSMITH_DOWNLOAD_RANGED_THRESHOLD";
+    private static final String  DL_RANGED_THRESHOLD_PROPERTY  = "cloudsmith.download.ranged.threshold";
+    private static final boolean HTTP_ADAPTIVE_DEFAULT         = false;
+    private static final String  HTTP_ADAPTIVE_ENVVAR          = "CLOUDSMITH_HTTP_TIMEOUTS_ADAPTIVE";
+    private static final String  HTTP_ADAPTIVE_PROPERTY        = "cloudsmith.http.timeouts.adaptive";
     private static final int     HTTP_CONNECT_TIMEOUT_DEFAULT  = 15; // seconds
     private static final String  HTTP_CONNECT_TIMEOUT_ENVVAR   = "CLOUDSMITH_HTTP_CONNECT_TIMEOUT";
     private static final String  HTTP_CONNECT_TIMEOUT_PROPERTY = "cloudsmith.http.connect.timeout";
+    private static final int     HTTP_DNS_TTL_DEFAULT          = 60; // seconds
+    private static final String  HTTP_DNS_TTL_ENVVAR           = "CLOUDSMITH_HTTP_DNS_TTL";
+    private static final String  HTTP_DNS_TTL_PROPERTY         = "cloudsmith.http.dns.ttl";
+    private static final boolean HTTP_HTTP2_ENABLED_DEFAULT    = true;
+    private static final String  HTTP_HTTP2_ENABLED_ENVVAR     = "CLOUDSMITH_HTTP_HTTP2_ENABLED";
+    private static final String  HTTP_HTTP2_ENABLED_PROPERTY   = "cloudsmith.http.http2.enabled";
+    private static final int     HTTP_KEEP_ALIVE_DEFAULT       = 300; // seconds
+    private static final String  HTTP_KEEP_ALIVE_ENVVAR        = "CLOUDSMITH_HTTP_KEEP_ALIVE";
+    private static final String  HTTP_KEEP_ALIVE_PROPERTY      = "cloudsmith.http.keep_alive";
+    private static final int     HTTP_MAX_IDLE_DEFAULT         = 16;
+    private static final String  HTTP_MAX_IDLE_ENVVAR          = "CLOUDSMITH_HTTP_MAX_IDLE";
+    private static final String  HTTP_MAX_IDLE_PROPERTY        = "cloudsmith.http.max_idle";
     private static final int     HTTP_READ_TIMEOUT_DEFAULT     = 30; // seconds
     private static final String  HTTP_READ_TIMEOUT_ENVVAR      = "CLOUDSMITH_HTTP_READ_TIMEOUT";
     private static final String  HTTP_READ_TIMEOUT_PROPERTY    = "cloudsmith.http.get.timeout";
+    private static final int     HTTP_STALL_TIMEOUT_DEFAULT    = 30; // seconds
+    private static final String  HTTP_STALL_TIMEOUT_ENVVAR     = "CLOUDSMITH_HTTP_STALL_TIMEOUT";
+    private static final String  HTTP_STALL_TIMEOUT_PROPERTY   = "cloudsmith.http.stall.timeout";
     private static final int     HTTP_WRITE_TIMEOUT_DEFAULT    = 120; // seconds
     private static final String  HTTP_WRITE_TIMEOUT_ENVVAR     = "CLOUDSMITH_HTTP_WRITE_TIMEOUT";
     private static final String  HTTP_WRITE_TIMEOUT_PROPERTY   = "cloudsmith.http.put.timeout";
+    private static final int     INDEX_MISSING_TTL_DEFAULT     = 30; // seconds
+    private static final String  INDEX_MISSING_TTL_ENVVAR      = "CLOUDSMITH_INDEX_MISSING_TTL";
+    private static final String  INDEX_MISSING_TTL_PROPERTY    = "cloudsmith.index.missing_ttl";
+    private static final int     INDEX_TTL_DEFAULT             = 60; // seconds
+    private static final String  INDEX_TTL_ENVVAR              = "CLOUDSMITH_INDEX_TTL";
+    private static final String  INDEX_TTL_PROPERTY            = "cloudsmith.index.ttl";
+    private static final boolean JOURNAL_ENABLED_DEFAULT       = false;
+    private static final String  JOURNAL_ENABLED_ENVVAR        = "CLOUDSMITH_JOURNAL_ENABLED";
+    private static final String  JOURNAL_ENABLED_PROPERTY      = "cloudsmith.journal.enabled";
+    private static final int     JOURNAL_PACKAGE_TTL_DEFAULT   = 86400; // seconds
+    private static final String  JOURNAL_PACKAGE_TTL_ENVVAR    = "CLOUDSMITH_JOURNAL_PACKAGE_TTL";
+    private static final String  JOURNAL_PACKAGE_TTL_PROPERTY  = "cloudsmith.journal.package_ttl";
+    private static final String  JOURNAL_PATH_DEFAULT          = ".cloudsmith/maven-wagon/journal"; // in home
+    private static final String  JOURNAL_PATH_ENVVAR           = "CLOUDSMITH_JOURNAL_PATH";
+    private static final String  JOURNAL_PATH_PROPERTY         = "cloudsmith.journal.path";
+    private static final int     JOURNAL_TTL_DEFAULT           = 3600; // seconds
+    private static final String  JOURNAL_TTL_ENVVAR            = "CLOUDSMITH_JOURNAL_TTL";
+    private static final String  JOURNAL_TTL_PROPERTY          = "cloudsmith.journal.ttl";
+    private static final boolean METADATA_PERSIST_DEFAULT      = false;
+    private static final String  METADATA_PERSIST_ENVVAR       = "CLOUDSMITH_METADATA_PERSIST";
+    private static final String  METADATA_PERSIST_PROPERTY     = "cloudsmith.metadata.persist";
+    private static final String  METADATA_PATH_DEFAULT         = ".cloudsmith/maven-wagon/metadata"; // in home
+    private static final String  METADATA_PATH_ENVVAR          = "CLOUDSMITH_METADATA_PATH";
+    private static final String  METADATA_PATH_PROPERTY        = "cloudsmith.metadata.path";
+    private static final int     METADATA_TTL_DEFAULT          = 3600; // seconds
+    private static final String  METADATA_TTL_ENVVAR           = "CLOUDSMITH_METADATA_TTL";
+    private static final String  METADATA_TTL_PROPERTY         = "cloudsmith.metadata.ttl";
+    private static final boolean METRICS_JMX_DEFAULT           = true;
+    private static final String  METRICS_JMX_ENVVAR            = "CLOUDSMITH_METRICS_JMX";
+    private static final String  METRICS_JMX_PROPERTY          = "cloudsmith.metrics.jmx";
+    private static final String  METRICS_REPORT_DEFAULT        = "";
+    private static final String  METRICS_REPORT_ENVVAR         = "CLOUDSMITH_METRICS_REPORT";
+    private static final String  METRICS_REPORT_PROPERTY       = "cloudsmith.metrics.report";
+    private static final boolean RATELIMIT_ENABLED_DEFAULT     = false;
+    private static final String  RATELIMIT_ENABLED_ENVVAR      = "CLOUDSMITH_RATELIMIT_ENABLED";
+    private static final String  RATELIMIT_ENABLED_PROPERTY    = "cloudsmith.ratelimit.enabled";
+    private static final int     RATELIMIT_RESERVE_DEFAULT     = 20; // percent
+    private static final String  RATELIMIT_RESERVE_ENVVAR      = "CLOUDSMITH_RATELIMIT_RESERVE";
+    private static final String  RATELIMIT_RESERVE_PROPERTY    = "cloudsmith.ratelimit.reserve";
+    private static final boolean UPLOAD_ADAPTIVE_DEFAULT       = false;
+    private static final String  UPLOAD_ADAPTIVE_ENVVAR        = "CLOUDSMITH_UPLOAD_ADAPTIVE";
+    private static final String  UPLOAD_ADAPTIVE_PROPERTY      = "cloudsmith.upload.adaptive";
+    private static final int     UPLOAD_ADAPTIVE_MAX_DEFAULT   = 16;
+    private static final String  UPLOAD_ADAPTIVE_MAX_ENVVAR    = "CLOUDSMITH_UPLOAD_ADAPTIVE_MAX";
+    private static final String  UPLOAD_ADAPTIVE_MAX_PROPERTY  = "cloudsmith.upload.adaptive.max";
+    private static final boolean UPLOAD_ASYNC_DEFAULT          = false;
+    private static final String  UPLOAD_ASYNC_ENVVAR           = "CLOUDSMITH_UPLOAD_ASYNC";
+    private static final String  UPLOAD_ASYNC_PROPERTY         = "cloudsmith.upload.async";
+    private static final int     UPLOAD_BANDWIDTH_DEFAULT      = 0; // kilobytes per second
+    private static final String  UPLOAD_BANDWIDTH_ENVVAR       = "CLOUDSMITH_UPLOAD_BANDWIDTH";
+    private static final String  UPLOAD_BANDWIDTH_PROPERTY     = "cloudsmith.upload.bandwidth";
+    private static final boolean UPLOAD_DEDUP_DEFAULT          = false;
+    private static final String  UPLOAD_DEDUP_ENVVAR           = "CLOUDSMITH_UPLOAD_DEDUP";
+    private static final String  UPLOAD_DEDUP_PROPERTY         = "cloudsmith.upload.dedup";
+    private static final String  UPLOAD_DEDUP_PATH_DEFAULT     = ".cloudsmith/maven-wagon/upload-index"; // in home
+    private static final String  UPLOAD_DEDUP_PATH_ENVVAR      = "CLOUDSMITH_UPLOAD_DEDUP_PATH";
+    private static final String  UPLOAD_DEDUP_PATH_PROPERTY    = "cloudsmith.upload.dedup.path";
+    private static final int     UPLOAD_DEDUP_TTL_DEFAULT      = 3600; // seconds
+    private static final String  UPLOAD_DEDUP_TTL_ENVVAR       = "CLOUDSMITH_UPLOAD_DEDUP_TTL";
+    private static final String  UPLOAD_DEDUP_TTL_PROPERTY     = "cloudsmith.upload.dedup.ttl";
+    private static final int     UPLOAD_LG_ATTEMPTS_DEFAULT    = 6;
+    private static final String  UPLOAD_LG_ATTEMPTS_ENVVAR     = "CLOUDSMITH_UPLOAD_LARGE_ATTEMPTS";
+    private static final String  UPLOAD_LG_ATTEMPTS_PROPERTY   = "cloudsmith.upload.large.attempts";
+    private static final int     UPLOAD_LG_THRESHOLD_DEFAULT   = 100; // megabytes
+    private static final String  UPLOAD_LG_THRESHOLD_ENVVAR    = "CLOUDSMITH_UPLOAD_LARGE_THRESHOLD";
+    private static final String  UPLOAD_LG_THRESHOLD_PROPERTY  = "cloudsmith.upload.large.threshold";
+    private static final boolean UPLOAD_PREALLOC_DEFAULT       = false;
+    private static final String  UPLOAD_PREALLOC_ENVVAR        = "CLOUDSMITH_UPLOAD_PREALLOCATE";
+    private static final String  UPLOAD_PREALLOC_PROPERTY      = "cloudsmith.upload.preallocate";
+    private static final int     UPLOAD_THREADS_DEFAULT        = 4;
+    private static final String  UPLOAD_THREADS_ENVVAR         = "CLOUDSMITH_UPLOAD_THREADS";
+    private static final String  UPLOAD_THREADS_PROPERTY       = "cloudsmith.upload.threads";
+    private static final boolean UPLOAD_VERIFY_DEFAULT         = false;
+    private static final String  UPLOAD_VERIFY_ENVVAR          = "CLOUDSMITH_UPLOAD_VERIFY";
+    private static final String  UPLOAD_VERIFY_PROPERTY        = "cloudsmith.upload.verify";
+    private static final int     RETRY_BACKOFF_DEFAULT         = 500; // milliseconds
+    private static final String  RETRY_BACKOFF_ENVVAR          = "CLOUDSMITH_RETRY_BACKOFF";
+    private static final String  RETRY_BACKOFF_PROPERTY        = "cloudsmith.retry.backoff";
+    private static final int     RETRY_BUDGET_DEFAULT          = 100;
+    private static final String  RETRY_BUDGET_ENVVAR           = "CLOUDSMITH_RETRY_BUDGET";
+    private static final String  RETRY_BUDGET_PROPERTY         = "cloudsmith.retry.budget";
+    private static final int     RETRY_MAX_ATTEMPTS_DEFAULT    = 4;
+    private static final String  RETRY_MAX_ATTEMPTS_ENVVAR     = "CLOUDSMITH_RETRY_MAX_ATTEMPTS";
+    private static final String  RETRY_MAX_ATTEMPTS_PROPERTY   = "cloudsmith.retry.max_attempts";
+    private static final int     RETRY_MAX_BACKOFF_DEFAULT     = 30000; // milliseconds
+    private static final String  RETRY_MAX_BACKOFF_ENVVAR      = "CLOUDSMITH_RETRY_MAX_BACKOFF";
+    private static final String  RETRY_MAX_BACKOFF_PROPERTY    = "cloudsmith.retry.max_backoff";
+    private static final boolean SW_DEFERRED_DEFAULT           = false;
+    private static final String  SW_DEFERRED_ENVVAR            = "CLOUDSMITH_SYNC_WAIT_DEFERRED";
+    private static final String  SW_DEFERRED_PROPERTY          = "cloudsmith.sync_wait.deferred";
     private static final boolean SW_ENABLED_DEFAULT            = true;
     private static final String  SW_ENABLED_ENVVAR             = "CLOUDSMITH_SYNC_WAIT_ENABLED";
     private static final String  SW_ENABLED_PROPERTY           = "cloudsmith.sync_wait.enabled";
     private static final int     SW_INTERVAL_DEFAULT           = 5; // seconds
     private static final String  SW_INTERVAL_ENVVAR            = "CLOUDSMITH_SYNC_WAIT_INTERVAL";
     private static final String  SW_INTERVAL_PROPERTY          = "cloudsmith.sync_wait.interval";
+    private static final int     SW_MAX_INTERVAL_DEFAULT       = 60; // seconds
+    private static final String  SW_MAX_INTERVAL_ENVVAR        = "CLOUDSMITH_SYNC_WAIT_MAX_INTERVAL";
+    private static final String  SW_MAX_INTERVAL_PROPERTY      = "cloudsmith.sync_wait.max_interval";
     private static final boolean SW_VERBOSE_DEFAULT            = true;
     private static final String  SW_VERBOSE_ENVVAR             = "CLOUDSMITH_SYNC_WAIT_VERBOSE";
     private static final String  SW_VERBOSE_PROPERTY           = "cloudsmith.sync_wait.verbose";
+    private static final boolean WARMUP_ENABLED_DEFAULT        = false;
+    private static final String  WARMUP_ENABLED_ENVVAR         = "CLOUDSMITH_WARMUP_ENABLED";
+    private static final String  WARMUP_ENABLED_PROPERTY       = "cloudsmith.warmup.enabled";
 
     //
     // Static Properties
@@ -81,6 +224,73 @@ public final class Properties {
         );
     }
 
+    public static boolean isCacheEnabled() {
+        return getBooleanValue(
+            CACHE_ENABLED_ENVVAR,
+            CACHE_ENABLED_PROPERTY,
+            CACHE_ENABLED_DEFAULT
+        );
+    }
+
+    public static int getCacheMaxSize() {
+        int value = getIntegerValue(
+            CACHE_MAX_SIZE_ENVVAR,
+            CACHE_MAX_SIZE_PROPERTY,
+            CACHE_MAX_SIZE_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Cache max size cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static String getCachePath() {
+        return getStringValue(
+            CACHE_PATH_ENVVAR,
+            CACHE_PATH_PROPERTY,
+            Paths.get(System.getProperty("user.home"), CACHE_PATH_DEFAULT).toString()
+        );
+    }
+
+    public static int getCircuitCooldown() {
+        int value = getIntegerValue(
+            CIRCUIT_COOLDOWN_ENVVAR,
+            CIRCUIT_COOLDOWN_PROPERTY,
+            CIRCUIT_COOLDOWN_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Circuit breaker cooldown cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getCircuitThreshold() {
+        int value = getIntegerValue(
+            CIRCUIT_THRESHOLD_ENVVAR,
+            CIRCUIT_THRESHOLD_PROPERTY,
+            CIRCUIT_THRESHOLD_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Circuit breaker threshold cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
     public static boolean isDebug() {
         return getBooleanValue(
             DEBUG_ENVVAR,
@@ -89,6 +299,73 @@ public final class Properties {
         );
     }
 
+    public static boolean isDownloadRangedEnabled() {
+        return getBooleanValue(
+            DL_RANGED_ENVVAR,
+            DL_RANGED_PROPERTY,
+            DL_RANGED_DEFAULT
+        );
+    }
+
+    public static int getDownloadRangedChunk() {
+        int value = getIntegerValue(
+            DL_RANGED_CHUNK_ENVVAR,
+            DL_RANGED_CHUNK_PROPERTY,
+            DL_RANGED_CHUNK_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Ranged download chunk size cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getDownloadRangedThreads() {
+        int value = getIntegerValue(
+            DL_RANGED_THREADS_ENVVAR,
+            DL_RANGED_THREADS_PROPERTY,
+            DL_RANGED_THREADS_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Ranged download threads cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getDownloadRangedThreshold() {
+        int value = getIntegerValue(
+            DL_RANGED_THRESHOLD_ENVVAR,
+            DL_RANGED_THRESHOLD_PROPERTY,
+            DL_RANGED_THRESHOLD_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Ranged download threshold cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isHttpAdaptiveEnabled() {
+        return getBooleanValue(
+            HTTP_ADAPTIVE_ENVVAR,
+            HTTP_ADAPTIVE_PROPERTY,
+            HTTP_ADAPTIVE_DEFAULT
+        );
+    }
+
     public static int getHttpConnectTimeout() {
         int value = getIntegerValue(
             HTTP_CONNECT_TIMEOUT_ENVVAR,
@@ -106,6 +383,65 @@ public final class Properties {
         return value;
     }
 
+    public static int getHttpDnsTtl() {
+        int value = getIntegerValue(
+            HTTP_DNS_TTL_ENVVAR,
+            HTTP_DNS_TTL_PROPERTY,
+            HTTP_DNS_TTL_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] HTTP DNS TTL cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isHttp2Enabled() {
+        return getBooleanValue(
+            HTTP_HTTP2_ENABLED_ENVVAR,
+            HTTP_HTTP2_ENABLED_PROPERTY,
+            HTTP_HTTP2_ENABLED_DEFAULT
+        );
+    }
+
+    public static int getHttpKeepAlive() {
+        int value = getIntegerValue(
+            HTTP_KEEP_ALIVE_ENVVAR,
+            HTTP_KEEP_ALIVE_PROPERTY,
+            HTTP_KEEP_ALIVE_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] HTTP keep-alive cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getHttpMaxIdle() {
+        int value = getIntegerValue(
+            HTTP_MAX_IDLE_ENVVAR,
+            HTTP_MAX_IDLE_PROPERTY,
+            HTTP_MAX_IDLE_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] HTTP max idle connections cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
     public static int getHttpReadTimeout() {
         int value = getIntegerValue(
             HTTP_READ_TIMEOUT_ENVVAR,
@@ -123,6 +459,23 @@ public final class Properties {
         return value;
     }
 
+    public static int getHttpStallTimeout() {
+        int value = getIntegerValue(
+            HTTP_STALL_TIMEOUT_ENVVAR,
+            HTTP_STALL_TIMEOUT_PROPERTY,
+            HTTP_STALL_TIMEOUT_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] HTTP stall timeout cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
     public static int getHttpWriteTimeout() {
         int value = getIntegerValue(
             HTTP_WRITE_TIMEOUT_ENVVAR,
@@ -140,6 +493,389 @@ public final class Properties {
         return value;
     }
 
+    public static int getIndexMissingTtl() {
+        int value = getIntegerValue(
+            INDEX_MISSING_TTL_ENVVAR,
+            INDEX_MISSING_TTL_PROPERTY,
+            INDEX_MISSING_TTL_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Index missing TTL cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static int getIndexTtl() {
+        int value = getIntegerValue(
+            INDEX_TTL_ENVVAR,
+            INDEX_TTL_PROPERTY,
+            INDEX_TTL_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Index TTL cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isJournalEnabled() {
+        return getBooleanValue(
+            JOURNAL_ENABLED_ENVVAR,
+            JOURNAL_ENABLED_PROPERTY,
+            JOURNAL_ENABLED_DEFAULT
+        );
+    }
+
+    public static int getJournalPackageTtl() {
+        int value = getIntegerValue(
+            JOURNAL_PACKAGE_TTL_ENVVAR,
+            JOURNAL_PACKAGE_TTL_PROPERTY,
+            JOURNAL_PACKAGE_TTL_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Journal package TTL cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static String getJournalPath() {
+        return getStringValue(
+            JOURNAL_PATH_ENVVAR,
+            JOURNAL_PATH_PROPERTY,
+            Paths.get(System.getProperty("user.home"), JOURNAL_PATH_DEFAULT).toString()
+        );
+    }
+
+    public static int getJournalTtl() {
+        int value = getIntegerValue(
+            JOURNAL_TTL_ENVVAR,
+            JOURNAL_TTL_PROPERTY,
+            JOURNAL_TTL_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Journal TTL cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static boolean isMetadataPersistEnabled() {
+        return getBooleanValue(
+            METADATA_PERSIST_ENVVAR,
+            METADATA_PERSIST_PROPERTY,
+            METADATA_PERSIST_DEFAULT
+        );
+    }
+
+    public static String getMetadataPath() {
+        return getStringValue(
+            METADATA_PATH_ENVVAR,
+            METADATA_PATH_PROPERTY,
+            Paths.get(System.getProperty("user.home"), METADATA_PATH_DEFAULT).toString()
+        );
+    }
+
+    public static int getMetadataTtl() {
+        int value = getIntegerValue(
+            METADATA_TTL_ENVVAR,
+            METADATA_TTL_PROPERTY,
+            METADATA_TTL_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Metadata TTL cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isMetricsJmxEnabled() {
+        return getBooleanValue(
+            METRICS_JMX_ENVVAR,
+            METRICS_JMX_PROPERTY,
+            METRICS_JMX_DEFAULT
+        );
+    }
+
+    public static String getMetricsReport() {
+        return getStringValue(
+            METRICS_REPORT_ENVVAR,
+            METRICS_REPORT_PROPERTY,
+            METRICS_REPORT_DEFAULT
+        );
+    }
+
+    public static boolean isRateLimitEnabled() {
+        return getBooleanValue(
+            RATELIMIT_ENABLED_ENVVAR,
+            RATELIMIT_ENABLED_PROPERTY,
+            RATELIMIT_ENABLED_DEFAULT
+        );
+    }
+
+    public static int getRateLimitReserve() {
+        int value = getIntegerValue(
+            RATELIMIT_RESERVE_ENVVAR,
+            RATELIMIT_RESERVE_PROPERTY,
+            RATELIMIT_RESERVE_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Rate limit reserve cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        if (value > 100) {
+            System.out.println(
+                "[WARN] Rate limit reserve cannot be more than 100, setting value to 100."
+            );
+            value = 100;
+        }
+
+        return value;
+    }
+
+    public static boolean isUploadAdaptiveEnabled() {
+        return getBooleanValue(
+            UPLOAD_ADAPTIVE_ENVVAR,
+            UPLOAD_ADAPTIVE_PROPERTY,
+            UPLOAD_ADAPTIVE_DEFAULT
+        );
+    }
+
+    public static int getUploadAdaptiveMax() {
+        int value = getIntegerValue(
+            UPLOAD_ADAPTIVE_MAX_ENVVAR,
+            UPLOAD_ADAPTIVE_MAX_PROPERTY,
+            UPLOAD_ADAPTIVE_MAX_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Upload adaptive max cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static boolean isUploadAsyncEnabled() {
+        return getBooleanValue(
+            UPLOAD_ASYNC_ENVVAR,
+            UPLOAD_ASYNC_PROPERTY,
+            UPLOAD_ASYNC_DEFAULT
+        );
+    }
+
+    public static int getUploadBandwidth() {
+        int value = getIntegerValue(
+            UPLOAD_BANDWIDTH_ENVVAR,
+            UPLOAD_BANDWIDTH_PROPERTY,
+            UPLOAD_BANDWIDTH_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Upload bandwidth cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isUploadDedupEnabled() {
+        return getBooleanValue(
+            UPLOAD_DEDUP_ENVVAR,
+            UPLOAD_DEDUP_PROPERTY,
+            UPLOAD_DEDUP_DEFAULT
+        );
+    }
+
+    public static String getUploadDedupPath() {
+        return getStringValue(
+            UPLOAD_DEDUP_PATH_ENVVAR,
+            UPLOAD_DEDUP_PATH_PROPERTY,
+            Paths.get(System.getProperty("user.home"), UPLOAD_DEDUP_PATH_DEFAULT).toString()
+        );
+    }
+
+    public static int getUploadDedupTtl() {
+        int value = getIntegerValue(
+            UPLOAD_DEDUP_TTL_ENVVAR,
+            UPLOAD_DEDUP_TTL_PROPERTY,
+            UPLOAD_DEDUP_TTL_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Upload dedup TTL cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getUploadLargeAttempts() {
+        int value = getIntegerValue(
+            UPLOAD_LG_ATTEMPTS_ENVVAR,
+            UPLOAD_LG_ATTEMPTS_PROPERTY,
+            UPLOAD_LG_ATTEMPTS_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Large upload attempts cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getUploadLargeThreshold() {
+        int value = getIntegerValue(
+            UPLOAD_LG_THRESHOLD_ENVVAR,
+            UPLOAD_LG_THRESHOLD_PROPERTY,
+            UPLOAD_LG_THRESHOLD_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Large upload threshold cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static boolean isUploadPreallocateEnabled() {
+        return getBooleanValue(
+            UPLOAD_PREALLOC_ENVVAR,
+            UPLOAD_PREALLOC_PROPERTY,
+            UPLOAD_PREALLOC_DEFAULT
+        );
+    }
+
+    public static int getUploadAsyncThreads() {
+        int value = getIntegerValue(
+            UPLOAD_THREADS_ENVVAR,
+            UPLOAD_THREADS_PROPERTY,
+            UPLOAD_THREADS_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Upload threads cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static boolean isUploadVerifyEnabled() {
+        return getBooleanValue(
+            UPLOAD_VERIFY_ENVVAR,
+            UPLOAD_VERIFY_PROPERTY,
+            UPLOAD_VERIFY_DEFAULT
+        );
+    }
+
+    public static int getRetryBackoff() {
+        int value = getIntegerValue(
+            RETRY_BACKOFF_ENVVAR,
+            RETRY_BACKOFF_PROPERTY,
+            RETRY_BACKOFF_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Retry backoff cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getRetryBudget() {
+        int value = getIntegerValue(
+            RETRY_BUDGET_ENVVAR,
+            RETRY_BUDGET_PROPERTY,
+            RETRY_BUDGET_DEFAULT
+        );
+
+        if (value < 0) {
+            System.out.println(
+                "[WARN] Retry budget cannot be less than 0, setting value to 0."
+            );
+            value = 0;
+        }
+
+        return value;
+    }
+
+    public static int getRetryMaxAttempts() {
+        int value = getIntegerValue(
+            RETRY_MAX_ATTEMPTS_ENVVAR,
+            RETRY_MAX_ATTEMPTS_PROPERTY,
+            RETRY_MAX_ATTEMPTS_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Retry max attempts cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
+    public static int getRetryMaxBackoff() {
+        int value = getIntegerValue(
+            RETRY_MAX_BACKOFF_ENVVAR,
+            RETRY_MAX_BACKOFF_PROPERTY,
+            RETRY_MAX_BACKOFF_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Retry max backoff cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
     public static boolean isSyncWaitEnabled() {
         return getBooleanValue(
             SW_ENABLED_ENVVAR,
@@ -165,6 +901,31 @@ public final class Properties {
         return value;
     }
 
+    public static boolean isSyncWaitDeferred() {
+        return getBooleanValue(
+            SW_DEFERRED_ENVVAR,
+            SW_DEFERRED_PROPERTY,
+            SW_DEFERRED_DEFAULT
+        );
+    }
+
+    public static int getSyncWaitMaxInterval() {
+        int value = getIntegerValue(
+            SW_MAX_INTERVAL_ENVVAR,
+            SW_MAX_INTERVAL_PROPERTY,
+            SW_MAX_INTERVAL_DEFAULT
+        );
+
+        if (value < 1) {
+            System.out.println(
+                "[WARN] Sync wait max interval cannot be less than 1, setting value to 1."
+            );
+            value = 1;
+        }
+
+        return value;
+    }
+
     public static boolean isSyncWaitVerbose() {
         return getBooleanValue(
             SW_VERBOSE_ENVVAR,
@@ -173,6 +934,14 @@ public final class Properties {
         );
     }
 
+    public static boolean isWarmupEnabled() {
+        return getBooleanValue(
+            WARMUP_ENABLED_ENVVAR,
+            WARMUP_ENABLED_PROPERTY,
+            WARMUP_ENABLED_DEFAULT
+        );
+    }
+
     //
     // Private Helpers
     //
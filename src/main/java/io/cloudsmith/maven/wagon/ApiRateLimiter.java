@@ -0,0 +1,214 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+
+/**
+ * Client-side scheduling of Cloudsmith API calls, within the API's rate limits.
+ *
+ * <p>The API reports the rate limit for the API key with each response (the
+ * number of calls left, and when the limit resets). A budget is kept for each
+ * API key (shared by every wagon in the process) from these. Once half of it
+ * has been used, calls are paced so that the calls left are spread out until
+ * the limit resets, rather than used up at once and then rejected. Part of
+ * the budget is reserved for the calls that uploads depend on: status
+ * polling only uses the rest of it, and waits for those calls if they're
+ * waiting too.</p>
+ */
+public final class ApiRateLimiter implements Interceptor {
+
+    private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String RESET_HEADER = "X-RateLimit-Reset";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String API_KEY_HEADER = "X-Api-Key";
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /* Reset times below this are relative (in seconds) rather than epoch seconds. */
+    private static final long EPOCH_THRESHOLD = 1000000000L;
+
+    /* Don't wait longer than this for a single call, but let the API decide. */
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final ApiRateLimiter INSTANCE = new ApiRateLimiter();
+
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    private ApiRateLimiter() {
+    }
+
+    public static ApiRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!Properties.isRateLimitEnabled()) {
+            return chain.proceed(request);
+        }
+
+        Budget budget = this.budgets.computeIfAbsent(getKey(request), key -> new Budget());
+        boolean polling = isPolling(request);
+
+        budget.acquire(polling);
+        Response response = chain.proceed(request);
+        budget.update(response, System.currentTimeMillis());
+        return response;
+    }
+
+    // Helpers
+
+    /**
+     * Check if a request is status polling (rather than a call that an upload depends on).
+     */
+    private static boolean isPolling(Request request) {
+        return "GET".equals(request.method()) && request.httpUrl().encodedPath().endsWith("/status/");
+    }
+
+    private static String getKey(Request request) {
+        String credentials = request.header(API_KEY_HEADER);
+        if (credentials == null) {
+            credentials = request.header(AUTHORIZATION_HEADER);
+        }
+
+        /* Don't keep the credentials themselves around. */
+        String host = request.httpUrl().host();
+        return credentials != null ? host + "|" + DigestUtils.sha256Hex(credentials) : host;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * The rate limit budget for an API key.
+     */
+    private static final class Budget {
+        private long limit = -1;
+        private long remaining = -1;
+        private long resetAt = 0;
+        private long nextCallAt = 0;
+        private int waitingCritical = 0;
+
+        synchronized void acquire(boolean polling) throws InterruptedIOException {
+            long giveUpAt = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+
+            if (!polling) {
+                this.waitingCritical++;
+            }
+
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    long delay = getDelay(polling, now);
+
+                    if (delay <= 0 || now >= giveUpAt) {
+                        if (this.remaining > 0) {
+                            this.remaining--;
+                        }
+
+                        return;
+                    }
+
+                    wait(Math.min(delay, giveUpAt - now));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the API rate limit");
+            } finally {
+                if (!polling) {
+                    this.waitingCritical--;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Get how long a call must wait for (or 0 if it can go now).
+         */
+        private long getDelay(boolean polling, long now) {
+            if (this.remaining < 0 || now >= this.resetAt) {
+                /* Not known (yet), or the limit has reset since. */
+                return 0;
+            }
+
+            if (polling && this.waitingCritical > 0) {
+                /* Woken when the other calls have gone. */
+                return this.resetAt - now;
+            }
+
+            long reserve = polling ? this.limit * Properties.getRateLimitReserve() / 100 : 0;
+            long available = this.remaining - reserve;
+            if (available <= 0) {
+                return this.resetAt - now;
+            }
+
+            if (available * 2 > this.limit - reserve) {
+                /* Plenty left, so don't hold anything up. */
+                return 0;
+            }
+
+            /* Spread the calls left evenly until the limit resets. */
+            if (now < this.nextCallAt) {
+                return this.nextCallAt - now;
+            }
+
+            this.nextCallAt = now + (this.resetAt - now) / available;
+            return 0;
+        }
+
+        synchronized void update(Response response, long now) {
+            long responseLimit = parseLong(response.header(LIMIT_HEADER), -1);
+            long responseRemaining = parseLong(response.header(REMAINING_HEADER), -1);
+            long reset = parseLong(response.header(RESET_HEADER), -1);
+
+            if (responseLimit >= 0) {
+                this.limit = responseLimit;
+            }
+
+            if (responseRemaining >= 0) {
+                this.remaining = responseRemaining;
+            }
+
+            if (reset >= 0) {
+                this.resetAt = reset < EPOCH_THRESHOLD
+                    ? now + TimeUnit.SECONDS.toMillis(reset)
+                    : TimeUnit.SECONDS.toMillis(reset);
+            }
+
+            if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+                long retryAfter = parseLong(response.header(RETRY_AFTER_HEADER), -1);
+                this.remaining = 0;
+
+                if (retryAfter >= 0) {
+                    this.resetAt = Math.max(this.resetAt, now + TimeUnit.SECONDS.toMillis(retryAfter));
+                } else if (this.resetAt <= now) {
+                    this.resetAt = now + TimeUnit.SECONDS.toMillis(1);
+                }
+            }
+
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.MediaType;
+
+import org.apache.tika.Tika;
+
+
+/**
+ * Classifies artifact files as POMs, archives or anything else.
+ *
+ * <p>Most files are classified from their extension and (at most) their
+ * leading bytes, checking for the ZIP or XML magic. Checksums and signatures
+ * are classified without being read at all. Only files that remain ambiguous
+ * are passed to Apache Tika, which is loaded the first time it's needed.</p>
+ */
+public final class ArtifactClassifier {
+
+    /**
+     * What kind of artifact a file is.
+     */
+    public enum Kind { POM, ARCHIVE, OTHER }
+
+    private static final MediaType MEDIA_TYPE_JAR    = MediaType.parse("application/java-archive");
+    private static final MediaType MEDIA_TYPE_X_JAR  = MediaType.parse("application/x-java-archive");
+    private static final MediaType MEDIA_TYPE_X_EAR  = MediaType.parse("application/x-ear");
+    private static final MediaType MEDIA_TYPE_X_WAR  = MediaType.parse("application/x-war");
+    private static final MediaType MEDIA_TYPE_X_AAR  = MediaType.parse("application/x-aar");
+    private static final MediaType MEDIA_TYPE_ZIP    = MediaType.parse("application/zip");
+    private static final MediaType[] MEDIA_TYPE_JAR_LIKES = new MediaType[]{
+        MEDIA_TYPE_JAR, MEDIA_TYPE_X_JAR, MEDIA_TYPE_X_EAR, MEDIA_TYPE_X_WAR,
+        MEDIA_TYPE_X_AAR, MEDIA_TYPE_ZIP
+    };
+    private static final MediaType MEDIA_TYPE_XML  = MediaType.parse("application/xml");
+    private static final MediaType[] MEDIA_TYPE_POM_LIKES = new MediaType[]{
+        MEDIA_TYPE_XML
+    };
+    private static final MediaType MEDIA_TYPE_OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private static final byte[] ZIP_MAGIC = new byte[]{0x50, 0x4b, 0x03, 0x04};
+    private static final byte[] ZIP_EMPTY_MAGIC = new byte[]{0x50, 0x4b, 0x05, 0x06};
+
+    /* Extensions of files that are never uploaded as part of a package. */
+    private static final Set<String> SKIPPED_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "asc", "json", "md5", "module", "sha1", "sha256", "sha512", "sig", "txt"
+    ));
+
+    private static final Map<String, MediaType> ARCHIVE_MEDIA_TYPES = new HashMap<>();
+
+    static {
+        ARCHIVE_MEDIA_TYPES.put("aar", MEDIA_TYPE_X_AAR);
+        ARCHIVE_MEDIA_TYPES.put("ear", MEDIA_TYPE_X_EAR);
+        ARCHIVE_MEDIA_TYPES.put("jar", MEDIA_TYPE_JAR);
+        ARCHIVE_MEDIA_TYPES.put("war", MEDIA_TYPE_X_WAR);
+        ARCHIVE_MEDIA_TYPES.put("zip", MEDIA_TYPE_ZIP);
+    }
+
+    private ArtifactClassifier() {
+        throw new AssertionError("Instantiating utility class.");
+    }
+
+    /**
+     * The kind and media type of a file.
+     */
+    public static final class Classification {
+        private final Kind kind;
+        private final MediaType mediaType;
+
+        Classification(Kind kind, MediaType mediaType) {
+            this.kind = kind;
+            this.mediaType = mediaType;
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public MediaType getMediaType() {
+            return this.mediaType;
+        }
+    }
+
+    /**
+     * Classify an artifact, given its filename in the repository.
+     */
+    public static Classification classify(ArtifactFile artifact, String filename) throws IOException {
+        String extension = getExtension(filename);
+
+        if (SKIPPED_EXTENSIONS.contains(extension)) {
+            return new Classification(Kind.OTHER, MEDIA_TYPE_OCTET_STREAM);
+        }
+
+        if ("pom".equals(extension) && isXml(artifact.getHeader())) {
+            return new Classification(Kind.POM, MEDIA_TYPE_XML);
+        }
+
+        if (extension != null && extension.endsWith("ar")) {
+            /* Anything named like an archive is treated as one, whatever its content. */
+            MediaType mediaType = MEDIA_TYPE_OCTET_STREAM;
+            if (isZip(artifact.getHeader())) {
+                mediaType = ARCHIVE_MEDIA_TYPES.getOrDefault(extension, MEDIA_TYPE_ZIP);
+            }
+
+            return new Classification(Kind.ARCHIVE, mediaType);
+        }
+
+        if ("zip".equals(extension) && isZip(artifact.getHeader())) {
+            return new Classification(Kind.ARCHIVE, MEDIA_TYPE_ZIP);
+        }
+
+        return classifyWithTika(artifact);
+    }
+
+    // Helpers
+
+    private static Classification classifyWithTika(ArtifactFile artifact) throws IOException {
+        MediaType mediaType = MediaType.parse(
+            TikaHolder.TIKA.detect(artifact.getHeader(), artifact.getFile().getName())
+        );
+
+        if (mediaType == null) {
+            return new Classification(Kind.OTHER, MEDIA_TYPE_OCTET_STREAM);
+        }
+
+        for (MediaType pomMediaType : MEDIA_TYPE_POM_LIKES) {
+            if (mediaType.equals(pomMediaType)) {
+                return new Classification(Kind.POM, mediaType);
+            }
+        }
+
+        for (MediaType jarMediaType : MEDIA_TYPE_JAR_LIKES) {
+            if (mediaType.equals(jarMediaType)) {
+                return new Classification(Kind.ARCHIVE, mediaType);
+            }
+        }
+
+        return new Classification(Kind.OTHER, mediaType);
+    }
+
+    private static String getExtension(String filename) {
+        int k = filename.lastIndexOf('.');
+        if (k <= 0) {
+            return null;
+        }
+
+        return filename.substring(k + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isZip(byte[] header) {
+        return startsWith(header, ZIP_MAGIC) || startsWith(header, ZIP_EMPTY_MAGIC);
+    }
+
+    /**
+     * Check for XML content (an optional BOM and whitespace, then a tag).
+     */
+    private static boolean isXml(byte[] header) {
+        int i = 0;
+
+        if (header.length >= 3 && (header[0] & 0xff) == 0xef
+                && (header[1] & 0xff) == 0xbb && (header[2] & 0xff) == 0xbf) {
+            i = 3;
+        }
+
+        while (i < header.length && Character.isWhitespace(header[i])) {
+            i++;
+        }
+
+        return i < header.length && header[i] == '<';
+    }
+
+    private static boolean startsWith(byte[] header, byte[] magic) {
+        if (header.length < magic.length) {
+            return false;
+        }
+
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Holds Tika, so that it's only loaded if it's actually needed.
+     */
+    private static final class TikaHolder {
+        private static final Tika TIKA = new Tika();
+    }
+}
@@ -0,0 +1,178 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+
+
+/**
+ * A local artifact file, read from disk once for type detection and checksums.
+ *
+ * <p>The first call to any of the checksum getters streams the file through
+ * the MD5, SHA-1 and SHA-256 digests in a single pass, capturing the header
+ * bytes along the way. Results are cached (keyed by path, size and
+ * modification time), so the same file is never hashed twice.</p>
+ */
+public final class ArtifactFile {
+
+    static final int HEADER_SIZE = 8192;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CACHE_SIZE = 256;
+
+    private static final Map<String, ArtifactFile> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<String, ArtifactFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArtifactFile> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        }
+    );
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+
+    private byte[] header = null;
+    private String md5 = null;
+    private String sha1 = null;
+    private String sha256 = null;
+
+    private ArtifactFile(File file) {
+        this.file = file;
+        this.length = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    /**
+     * Get the (possibly cached) artifact for a local file.
+     */
+    public static ArtifactFile of(File file) {
+        ArtifactFile candidate = new ArtifactFile(file);
+        String key = candidate.getCacheKey();
+
+        synchronized (CACHE) {
+            ArtifactFile cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            CACHE.put(key, candidate);
+        }
+
+        return candidate;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Get the leading bytes of the file (for content sniffing).
+     */
+    public synchronized byte[] getHeader() throws IOException {
+        if (this.header == null) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HEADER_SIZE, this.length));
+
+            try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+                int read = 0;
+                while (buffer.hasRemaining() && read >= 0) {
+                    read = channel.read(buffer);
+                }
+            }
+
+            this.header = Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        return this.header;
+    }
+
+    public synchronized String getMd5() throws IOException {
+        ingest();
+        return this.md5;
+    }
+
+    public synchronized String getSha1() throws IOException {
+        ingest();
+        return this.sha1;
+    }
+
+    public synchronized String getSha256() throws IOException {
+        ingest();
+        return this.sha256;
+    }
+
+    /**
+     * Read the file once, computing all checksums and capturing the header.
+     */
+    private void ingest() throws IOException {
+        if (this.md5 != null) {
+            return;
+        }
+
+        MessageDigest md5Digest = getDigest("MD5");
+        MessageDigest sha1Digest = getDigest("SHA-1");
+        MessageDigest sha256Digest = getDigest("SHA-256");
+
+        byte[] leading = new byte[(int) Math.min(HEADER_SIZE, this.length)];
+        int leadingSize = 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                if (read == 0) {
+                    continue;
+                }
+
+                if (leadingSize < leading.length) {
+                    int count = Math.min(read, leading.length - leadingSize);
+                    System.arraycopy(bytes, 0, leading, leadingSize, count);
+                    leadingSize += count;
+                }
+
+                md5Digest.update(bytes, 0, read);
+                sha1Digest.update(bytes, 0, read);
+                sha256Digest.update(bytes, 0, read);
+                buffer.clear();
+            }
+        }
+
+        this.header = Arrays.copyOf(leading, leadingSize);
+        this.sha1 = Hex.encodeHexString(sha1Digest.digest());
+        this.sha256 = Hex.encodeHexString(sha256Digest.digest());
+        this.md5 = Hex.encodeHexString(md5Digest.digest());
+    }
+
+    private String getCacheKey() {
+        return this.file.getAbsolutePath() + ":" + this.length + ":" + this.lastModified;
+    }
+
+    private static MessageDigest getDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
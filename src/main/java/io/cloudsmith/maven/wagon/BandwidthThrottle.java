@@ -0,0 +1,77 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Process-wide cap on the rate at which uploads are sent.
+ *
+ * <p>Each chunk of an upload reserves its share of the bandwidth, and waits
+ * until the rate allows it to be sent. Up to a second's worth of unused
+ * bandwidth can be saved up, so short bursts (e.g. small files) aren't
+ * delayed needlessly.</p>
+ */
+public final class BandwidthThrottle {
+
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static BandwidthThrottle sharedThrottle = null;
+
+    private final double nanosPerByte;
+    private long nextFreeAt = System.nanoTime();
+
+    private BandwidthThrottle(long bytesPerSecond) {
+        this.nanosPerByte = 1e9 / bytesPerSecond;
+    }
+
+    /**
+     * Get the shared throttle, or null if the upload bandwidth isn't capped.
+     */
+    public static synchronized BandwidthThrottle getShared() {
+        long bytesPerSecond = Properties.getUploadBandwidth() * 1024L;
+        if (bytesPerSecond <= 0) {
+            return null;
+        }
+
+        if (sharedThrottle == null) {
+            sharedThrottle = new BandwidthThrottle(bytesPerSecond);
+        }
+
+        return sharedThrottle;
+    }
+
+    /**
+     * Wait until a number of bytes can be sent.
+     */
+    public void acquire(int bytes) throws InterruptedIOException {
+        long delayNanos = reserve(bytes);
+        if (delayNanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for upload bandwidth");
+        }
+    }
+
+    // Helpers
+
+    /**
+     * Reserve bandwidth for a number of bytes, returning how long to wait before sending them.
+     */
+    private synchronized long reserve(int bytes) {
+        long now = System.nanoTime();
+
+        if (now - this.nextFreeAt > BURST_NANOS) {
+            this.nextFreeAt = now - BURST_NANOS;
+        }
+
+        long delayNanos = this.nextFreeAt - now;
+        this.nextFreeAt += (long) (bytes * this.nanosPerByte);
+        return delayNanos;
+    }
+}
@@ -0,0 +1,71 @@
+package io.cloudsmith.maven.wagon;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+
+/**
+ * Resolves hostnames via the system resolver, caching results for a TTL.
+ */
+public class CachingDns implements Dns {
+
+    private final ConcurrentMap<String, CachedLookup> lookups = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    public CachingDns(int ttlSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        if (this.ttlNanos <= 0) {
+            return Dns.SYSTEM.lookup(hostname);
+        }
+
+        long now = System.nanoTime();
+        CachedLookup cached = this.lookups.get(hostname);
+
+        if (cached != null && now - cached.getResolvedAt() < this.ttlNanos) {
+            return cached.getAddresses();
+        }
+
+        List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+        this.lookups.put(hostname, new CachedLookup(addresses, now));
+        return addresses;
+    }
+
+    /**
+     * Forget all cached lookups.
+     */
+    public void clear() {
+        this.lookups.clear();
+    }
+
+    /**
+     * A resolved set of addresses and the time at which they were resolved.
+     */
+    private static final class CachedLookup {
+        private final List<InetAddress> addresses;
+        private final long resolvedAt;
+
+        CachedLookup(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = Collections.unmodifiableList(addresses);
+            this.resolvedAt = resolvedAt;
+        }
+
+        List<InetAddress> getAddresses() {
+            return this.addresses;
+        }
+
+        long getResolvedAt() {
+            return this.resolvedAt;
+        }
+    }
+}
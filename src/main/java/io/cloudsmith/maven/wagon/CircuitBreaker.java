@@ -0,0 +1,96 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Per-host circuit breaker, shared by all wagon instances.
+ *
+ * <p>After a number of consecutive failures the circuit opens, and calls to
+ * the host fail fast until a cooldown has passed. The first call after the
+ * cooldown is let through as a trial; if it succeeds the circuit closes
+ * again, otherwise it re-opens for another cooldown.</p>
+ */
+public final class CircuitBreaker {
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private final int threshold;
+    private final long cooldownNanos;
+
+    private int failures = 0;
+    private long openedAt = 0;
+    private boolean open = false;
+    private boolean trialInFlight = false;
+
+    CircuitBreaker(int threshold, long cooldownNanos) {
+        this.threshold = threshold;
+        this.cooldownNanos = cooldownNanos;
+    }
+
+    /**
+     * Get the (shared) circuit breaker for a host.
+     */
+    public static CircuitBreaker forHost(String host) {
+        return BREAKERS.computeIfAbsent(
+            host,
+            key -> new CircuitBreaker(
+                Properties.getCircuitThreshold(), TimeUnit.SECONDS.toNanos(Properties.getCircuitCooldown())
+            )
+        );
+    }
+
+    /**
+     * Check if a call may proceed.
+     */
+    public synchronized boolean allowRequest() {
+        if (!this.open) {
+            return true;
+        }
+
+        if (!this.trialInFlight && System.nanoTime() - this.openedAt >= this.cooldownNanos) {
+            this.trialInFlight = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Record a successful call (closing the circuit).
+     */
+    public synchronized void recordSuccess() {
+        this.failures = 0;
+        this.open = false;
+        this.trialInFlight = false;
+    }
+
+    /**
+     * Record a call that failed without saying anything about the host (e.g. a local error).
+     *
+     * <p>This doesn't change the state of the circuit, but if the call was the
+     * trial, it lets another call be tried instead.</p>
+     */
+    public synchronized void recordAbandoned() {
+        this.trialInFlight = false;
+    }
+
+    /**
+     * Record a failed call (opening the circuit if over the threshold).
+     */
+    public synchronized void recordFailure() {
+        this.failures++;
+
+        if (this.trialInFlight || this.failures >= this.threshold) {
+            this.open = true;
+            this.openedAt = System.nanoTime();
+            this.trialInFlight = false;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return this.open;
+    }
+}
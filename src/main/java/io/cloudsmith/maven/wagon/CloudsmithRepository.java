@@ -1,8 +1,15 @@
 package io.cloudsmith.maven.wagon;
 
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.net.URLDecoder;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.maven.wagon.repository.Repository;
 
@@ -15,17 +22,47 @@ public class CloudsmithRepository {
     private static final String PREFIX = "cloudsmith";
     private static final String DEFAULT_HOST = "api.cloudsmith.io";
     private static final String DEFAULT_PATH = "";
+    private static final String MIRRORS_PARAM = "mirrors=";
+
+    private static final ConcurrentMap<String, CloudsmithRepository> PARSED = new ConcurrentHashMap<>();
 
     private Repository repository = null;
     private String apiUrl;
     private String ownerName;
     private String repositoryName;
+    private List<CloudsmithRepository> targets;
 
     public CloudsmithRepository(Repository repository) {
         this.repository = repository;
         determineCloudsmithInfo();
     }
 
+    /**
+     * A mirror of another repository (on the same API).
+     */
+    private CloudsmithRepository(CloudsmithRepository primary, String ownerName, String repositoryName) {
+        this.repository = primary.repository;
+        this.apiUrl = primary.apiUrl;
+        this.ownerName = ownerName;
+        this.repositoryName = repositoryName;
+        this.targets = Collections.singletonList(this);
+    }
+
+    /**
+     * Get the (possibly cached) Cloudsmith information for a repository.
+     */
+    public static CloudsmithRepository of(Repository repository) {
+        CloudsmithRepository cached = PARSED.get(repository.getUrl());
+        if (cached != null) {
+            return cached;
+        }
+
+        /* Parse outside of the map, so that invalid URLs aren't cached. */
+        CloudsmithRepository parsed = new CloudsmithRepository(repository);
+        CloudsmithRepository existing = PARSED.putIfAbsent(repository.getUrl(), parsed);
+        return existing != null ? existing : parsed;
+    }
+
     public String getOwnerName() {
         return this.ownerName;
     }
@@ -38,6 +75,21 @@ public class CloudsmithRepository {
         return this.apiUrl;
     }
 
+    /**
+     * Get the repositories to deploy to: this repository, then any mirrors.
+     *
+     * <p>Mirrors are given as a query parameter on the repository URL, e.g.
+     * <code>cloudsmith+https://api.cloudsmith.io/owner/repo?mirrors=owner/other,partner/repo</code>.</p>
+     */
+    public List<CloudsmithRepository> getTargets() {
+        return this.targets;
+    }
+
+    @Override
+    public String toString() {
+        return this.ownerName + "/" + this.repositoryName;
+    }
+
     // Helpers
 
     private void determineCloudsmithInfo() {
@@ -75,6 +127,8 @@ public class CloudsmithRepository {
             );
         }
 
+        String query = url.getQuery();
+
         try {
             url = new URL(url.getProtocol(), host, url.getPort(), path);
         } catch (MalformedURLException ex) {
@@ -84,12 +138,51 @@ public class CloudsmithRepository {
         this.apiUrl = url.toString();
         this.ownerName = pathParts[pathParts.length - 2];
         this.repositoryName = pathParts[pathParts.length - 1];
+        this.targets = determineTargets(baseUrl, query);
+    }
+
+    private List<CloudsmithRepository> determineTargets(String baseUrl, String query) {
+        List<CloudsmithRepository> allTargets = new ArrayList<>();
+        allTargets.add(this);
+
+        if (query == null) {
+            return Collections.unmodifiableList(allTargets);
+        }
+
+        for (String param : query.split("&")) {
+            if (!param.startsWith(MIRRORS_PARAM)) {
+                continue;
+            }
+
+            String mirrors = param.substring(MIRRORS_PARAM.length());
+
+            try {
+                mirrors = URLDecoder.decode(mirrors, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                raiseCloudsmithInfoException(baseUrl);
+            }
+
+            for (String mirror : mirrors.split(",")) {
+                if (mirror.trim().isEmpty()) {
+                    continue;
+                }
+
+                String[] mirrorParts = mirror.trim().split("/");
+                if (mirrorParts.length != 2 || mirrorParts[0].isEmpty() || mirrorParts[1].isEmpty()) {
+                    raiseCloudsmithInfoException(baseUrl);
+                }
+
+                allTargets.add(new CloudsmithRepository(this, mirrorParts[0], mirrorParts[1]));
+            }
+        }
+
+        return Collections.unmodifiableList(allTargets);
     }
 
     private void raiseCloudsmithInfoException(String baseUrl) {
         throw new IllegalArgumentException(
            "Repository <url> must be in form of "
-            + "'cloudsmith+https://<api_url>/<namespace>/<repo>', got: "
+            + "'cloudsmith+https://<api_url>/<namespace>/<repo>[?mirrors=<namespace>/<repo>,...]', got: "
             + baseUrl
         );
     }
@@ -3,13 +3,38 @@ package io.cloudsmith.maven.wagon;
 import com.google.gson.internal.LinkedTreeMap;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Locale;
 import java.util.Map.Entry;
 
@@ -24,7 +49,7 @@ import io.cloudsmith.api.models.MavenPackageUpload;
 import io.cloudsmith.api.models.PackageFileUpload;
 import io.cloudsmith.api.models.PackageStatus;
 import io.cloudsmith.api.models.PackagesUploadMaven;
-import io.cloudsmith.api.models.Repository;
+import io.cloudsmith.maven.wagon.TransferMetrics.Phase;
 
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -47,7 +72,6 @@ import org.apache.maven.wagon.ConnectionException;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.resource.Resource;
 import org.apache.maven.wagon.TransferFailedException;
-import org.apache.tika.Tika;
 
 
 /**
@@ -59,29 +83,37 @@ public class CloudsmithWagon extends AbstractWagon {
 
     private static final String METADATA_XML = "maven-metadata.xml";
 
-    private static final MediaType MEDIA_TYPE_JAR    = MediaType.parse("application/java-archive");
-    private static final MediaType MEDIA_TYPE_X_JAR  = MediaType.parse("application/x-java-archive");
-    private static final MediaType MEDIA_TYPE_X_EAR  = MediaType.parse("application/x-ear");
-    private static final MediaType MEDIA_TYPE_X_WAR  = MediaType.parse("application/x-war");
-    private static final MediaType MEDIA_TYPE_X_AAR  = MediaType.parse("application/x-aar");
-    private static final MediaType MEDIA_TYPE_ZIP    = MediaType.parse("application/zip");
-    private static final MediaType[] MEDIA_TYPE_JAR_LIKES = new MediaType[]{
-        MEDIA_TYPE_JAR, MEDIA_TYPE_X_JAR, MEDIA_TYPE_X_EAR, MEDIA_TYPE_X_WAR,
-        MEDIA_TYPE_X_AAR, MEDIA_TYPE_ZIP
-    };
-    private static final MediaType MEDIA_TYPE_XML  = MediaType.parse("application/xml");
-    private static final MediaType[] MEDIA_TYPE_POM_LIKES = new MediaType[]{
-        MEDIA_TYPE_XML
-    };
-    private static final Tika TIKA = new Tika();
-
-    private String               cdnUrl     = "";
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_NOT_FOUND = 404;
+
+    /* ETags of downloaded files (the most recently used), for conditional requests. */
+    private static final int MAX_ETAGS = 1000;
+    private static final Map<String, String> ETAGS = Collections.synchronizedMap(
+        new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_ETAGS;
+            }
+        }
+    );
+
+    /* The metrics report covers the whole process (e.g. every module of a build). */
+    private static final Set<String> REPORTED_REPOSITORIES = new ConcurrentSkipListSet<>();
+    private static final AtomicBoolean REPORTED_UPLOAD_FAILED = new AtomicBoolean(false);
+
+    private volatile String      cdnUrl     = "";
     private CloudsmithRepository repository = null;
 
     private ApiClient           client         = null;
-    private PackagesUploadMaven packageParams  = null;
+    private TransferMetrics     metrics        = TransferMetrics.newSession();
+    private RetryPolicy         retryPolicy    = RetryPolicy.fromProperties(this.metrics);
 
-    private Boolean             uploadFailed   = false;
+    private ExecutorService     uploadExecutor = null;
+    private CompletableFuture<Void> cdnPrefetch = null;
+    private final ConcurrentMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger failedSessions = new AtomicInteger();
+    private final UploadSlots uploadSlots = new UploadSlots();
 
     public CloudsmithWagon() {
         super();
@@ -93,13 +125,19 @@ public class CloudsmithWagon extends AbstractWagon {
         logDebug("openConnectionInternal", "opening");
         resetState();
         configure();
+        this.metrics = TransferMetrics.newSession();
+        this.retryPolicy = RetryPolicy.fromProperties(this.metrics);
+
+        if (Properties.isWarmupEnabled()) {
+            warmUp();
+        }
     }
 
     @Override
     public void get(String source, File destination)
             throws TransferFailedException, ResourceDoesNotExistException,
                    AuthorizationException {
-        if (uploadFailed) {
+        if (isUploadFailed(UploadSession.keyOf(source))) {
             return;
         }
 
@@ -114,9 +152,268 @@ public class CloudsmithWagon extends AbstractWagon {
             "\n  Destination =", destination.getName()
         );
 
+        download(source, destination, 0);
+    }
+
+    @Override
+    public boolean getIfNewer(String resourceName, File destination, long timestamp)
+            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        logDebug(
+            "getIfNewer",
+            "\n  ResourceName =", resourceName,
+            "\n  Destination  =", destination.getName(),
+            "\n  Timestamp    =", Long.toString(timestamp)
+        );
+
+        return download(resourceName, destination, timestamp);
+    }
+
+    @Override
+    public boolean resourceExists(String resourceName)
+            throws TransferFailedException, AuthorizationException {
+        logDebug("resourceExists", "\n  ResourceName =", resourceName);
+
+        CloudsmithRepository csmRepository = getCloudsmithRepository();
+        RepositoryIndex index = RepositoryIndex.getInstance();
+
+        if (index.isMissing(csmRepository, resourceName)) {
+            return false;
+        }
+
+        if (index.isListed(csmRepository, resourceName)) {
+            return true;
+        }
+
+        Request request = new Request.Builder()
+            .url(getResourceUrl(resourceName))
+            .head()
+            .build();
+
+        try (Response response = this.retryPolicy.callHttp(getHttpClient(), request)) {
+            if (response.code() == HTTP_NOT_FOUND) {
+                index.recordMissing(csmRepository, resourceName);
+                return false;
+            }
+
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response (" + response.code() + ") for " + resourceName);
+            }
+
+            return true;
+        } catch (IOException ex) {
+            logError(ex.getMessage());
+            throw new TransferFailedException("Error checking file: ", ex);
+        }
+    }
+
+    @Override
+    public List<String> getFileList(String destinationDirectory)
+            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
+        logDebug("getFileList", "\n  DestinationDirectory =", destinationDirectory);
+
+        CloudsmithRepository csmRepository = getCloudsmithRepository();
+        PackagesApi packagesApi = new PackagesApi(this.client);
+        List<String> files;
+
+        try {
+            files = RepositoryIndex.getInstance().list(
+                csmRepository,
+                getCdnUrl(),
+                destinationDirectory,
+                (query, page, pageSize) -> this.retryPolicy.callApi(
+                    getApiHost(),
+                    "package list",
+                    () -> packagesApi.packagesList(
+                        csmRepository.getOwnerName(),
+                        csmRepository.getRepositoryName(),
+                        page,
+                        pageSize,
+                        query
+                    )
+                )
+            );
+        } catch (ApiException | URISyntaxException ex) {
+            logError(ex.getMessage());
+            throw new TransferFailedException("Error listing files: ", ex);
+        }
+
+        if (files == null) {
+            throw new ResourceDoesNotExistException("Directory does not exist: " + destinationDirectory);
+        }
+
+        return files;
+    }
+
+    @Override
+    public void put(File source, String destination)
+            throws TransferFailedException, ResourceDoesNotExistException,
+                   AuthorizationException {
+        if (isPathMetadataXml(destination)) {
+            /* This should be the last file in a normal upload (of each package). */
+            finaliseSessions(UploadSession.keyOf(destination));
+            return;
+        }
+
+        reportDeferredPackages(false);
+
+        logDebug(
+            "put",
+            "\n  Source      =", source.getName(),
+            "\n  Destination =", destination
+        );
+
+        FileType fileType = FileType.UNK;
+        List<UploadSession> targetSessions = getSessions(UploadSession.keyOf(destination));
+        Resource resource = getResourceFromFile(source);
+        ArtifactFile artifact = ArtifactFile.of(source);
+        String filename = getPathFilename(destination);
+        MediaType mediaType = null;
+
+        if (filename != null) {
+            long detectStart = System.nanoTime();
+
+            try {
+                ArtifactClassifier.Classification classification = ArtifactClassifier.classify(artifact, filename);
+                mediaType = classification.getMediaType();
+                fileType = determineFileType(classification.getKind(), source);
+                this.metrics.record(Phase.DETECT, detectStart, 0);
+            } catch (IOException ex) {
+                this.metrics.recordFailure(Phase.DETECT, detectStart);
+                targetSessions.forEach(this::setUploadFailed);
+                logError("Could not determine file type:", ex.getMessage());
+                fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
+                throw new TransferFailedException("Could not determine file type: ", ex);
+            }
+        }
+
+        if (fileType == FileType.UNK) {
+            logDebug("put", "Skipping unsupported file:", source.getName());
+            return;
+        }
+
+        firePutInitiated(resource, source);
+
+        for (UploadSession session : targetSessions) {
+            RepositoryIndex.getInstance().invalidate(session.getTarget(), destination);
+        }
+
+        final FileType targetFileType = fileType;
+        final MediaType targetMediaType = mediaType;
+        List<UploadSession> uploadSessions = new ArrayList<>();
+
+        for (UploadSession session : targetSessions) {
+            String journaledSlug = lookupJournaledPackage(session, artifact, filename);
+
+            if (journaledSlug == null) {
+                uploadSessions.add(session);
+                continue;
+            }
+
+            session.addJournaledUpload(journaledSlug, () -> {
+                uploadFile(session, resource, artifact, filename, targetFileType, targetMediaType);
+                return null;
+            });
+            logInfo(
+                "Skipped upload for", filename, "to", session.getTarget().toString(),
+                "(already deployed in", journaledSlug + ")"
+            );
+        }
+
+        if (uploadSessions.isEmpty()) {
+            firePutStarted(resource, source);
+            firePutCompleted(resource, source);
+            return;
+        }
+
+        prefetchCdnUrl();
+
+        if (Properties.isUploadPreallocateEnabled()) {
+            for (UploadSession session : uploadSessions) {
+                preallocateUploads(session, source, filename);
+            }
+        }
+
+        if (Properties.isUploadAsyncEnabled()) {
+            logDebug("put", "Queueing upload for", filename);
+
+            for (UploadSession session : uploadSessions) {
+                session.addPendingUpload(getUploadExecutor().submit(() -> {
+                    uploadFile(session, resource, artifact, filename, targetFileType, targetMediaType);
+                    return null;
+                }));
+            }
+
+            return;
+        }
+
+        if (uploadSessions.size() == 1) {
+            uploadFile(uploadSessions.get(0), resource, artifact, filename, fileType, mediaType);
+            return;
+        }
+
+        uploadToTargets(uploadSessions, resource, artifact, filename, fileType, mediaType);
+    }
+
+    @Override
+    public void closeConnection() throws ConnectionException {
+        try {
+            try {
+                awaitAllPendingUploads();
+            } catch (TransferFailedException ex) {
+                throw new ConnectionException("Outstanding uploads failed: ", ex);
+            } finally {
+                if (this.uploadExecutor != null) {
+                    this.uploadExecutor.shutdown();
+                    this.uploadExecutor = null;
+                }
+            }
+        } finally {
+            writeMetricsReport();
+        }
+    }
+
+    /**
+     * Get the CDN URL that a resource is downloaded from.
+     *
+     * <p>This lets other transports (e.g. the resolver transporter) download
+     * directly from the CDN, while uploading via the wagon.</p>
+     */
+    public String getResourceUrl(String resourceName) throws TransferFailedException {
+        try {
+            return getQualifiedCdnUrl(resourceName);
+        } catch (ApiException | URISyntaxException ex) {
+            logError(ex.getMessage());
+            throw new TransferFailedException("Error getting repository CDN: ", ex);
+        }
+    }
+
+    // helper methods
+
+    /**
+     * Download a file from the Cloudsmith CDN.
+     *
+     * <p>If a timestamp is given, the request is conditional (on the timestamp
+     * and any ETag previously seen for the file), and nothing is downloaded if
+     * the upstream file hasn't changed.</p>
+     *
+     * <p>If the download cache is enabled, cached release files are used
+     * without contacting the CDN, while cached snapshots and metadata are
+     * revalidated first.</p>
+     *
+     * @return true if the file was downloaded, false if it was unchanged
+     */
+    private boolean download(String source, File destination, long timestamp)
+            throws TransferFailedException, ResourceDoesNotExistException {
         Resource resource = new Resource(source);
         fireGetInitiated(resource, destination);
 
+        if (RepositoryIndex.getInstance().isMissing(getCloudsmithRepository(), source)) {
+            ResourceDoesNotExistException ex =
+                new ResourceDoesNotExistException("File does not exist: " + source);
+            fireTransferError(resource, ex, TransferEvent.REQUEST_GET);
+            throw ex;
+        }
+
         String baseUrl;
         String url;
 
@@ -130,240 +427,1133 @@ public class CloudsmithWagon extends AbstractWagon {
         }
 
         logDebug(
-            "get",
+            "download",
             "\n  BaseUrl      =", baseUrl,
             "\n  QualifiedUrl =", url);
 
-        Request request = new Request.Builder()
+        DownloadCache cache = getDownloadCache();
+        DownloadCache.Entry cached = null;
+
+        if (cache != null) {
+            cached = cache.lookup(url);
+
+            if (cached != null && isPathImmutable(source)) {
+                logDebug("download", "Using cached file:", source);
+                Boolean copied = copyFromCache(cache, cached, resource, destination, timestamp);
+                if (copied != null) {
+                    return copied;
+                }
+
+                cached = null;
+            }
+        }
+
+        if (cached == null && Properties.isDownloadRangedEnabled() && RangedDownloader.isCandidate(url)) {
+            Boolean downloaded = downloadRanged(url, resource, destination, timestamp, cache);
+            if (downloaded != null) {
+                return downloaded;
+            }
+        }
+
+        Request.Builder requestBuilder = new Request.Builder()
             .url(url)
-            .get()
-            .build();
+            .get();
+
+        String etagKey = url + "|" + destination.getAbsolutePath();
+
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                requestBuilder.header("If-None-Match", cached.getEtag());
+            } else if (cached.getLastModified() > 0) {
+                requestBuilder.header("If-Modified-Since", formatHttpDate(cached.getLastModified()));
+            }
+        } else if (timestamp > 0) {
+            requestBuilder.header("If-Modified-Since", formatHttpDate(timestamp));
+
+            String etag = ETAGS.get(etagKey);
+            if (etag != null && destination.exists()) {
+                requestBuilder.header("If-None-Match", etag);
+            }
+        }
+
+        OkHttpClient httpclient = getHttpClient();
+        Response response = null;
+        long downloadStart = System.nanoTime();
+
+        try {
+            response = this.retryPolicy.callHttp(httpclient, requestBuilder.build());
+
+            if (response.code() == HTTP_NOT_MODIFIED) {
+                if (cached != null) {
+                    logDebug("download", "Revalidated cached file:", source);
+                    Boolean copied = copyFromCache(cache, cached, resource, destination, timestamp);
+                    if (copied != null) {
+                        return copied;
+                    }
+
+                    /* The cached file went away, so fetch it unconditionally. */
+                    response.body().close();
+                    response = null;
+                    return download(source, destination, 0);
+                }
+
+                logDebug("download", "Not modified:", source);
+                return false;
+            }
+
+            if (response.code() == HTTP_NOT_FOUND) {
+                RepositoryIndex.getInstance().recordMissing(getCloudsmithRepository(), source);
+                ResourceDoesNotExistException ex =
+                    new ResourceDoesNotExistException("File does not exist: " + source);
+                fireTransferError(resource, ex, TransferEvent.REQUEST_GET);
+                throw ex;
+            }
+
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected response (" + response.code() + ") for " + url);
+            }
+
+            fireGetStarted(resource, destination);
+            writeDownload(response, url, destination, cache);
+            this.metrics.record(Phase.DOWNLOAD, downloadStart, destination.length());
+
+            String etag = response.header("ETag");
+            if (etag != null) {
+                ETAGS.put(etagKey, etag);
+            }
+        } catch (IOException ex) {
+            this.metrics.recordFailure(Phase.DOWNLOAD, downloadStart);
+            logError(ex.getMessage());
+            fireTransferError(resource, ex, TransferEvent.REQUEST_GET);
+            throw new TransferFailedException("Error downloading file: ", ex);
+        } finally {
+            if (response != null) {
+                response.body().close();
+            }
+        }
+
+        fireGetCompleted(resource, destination);
+        return true;
+    }
+
+    /**
+     * Download a large file from the CDN as concurrent byte ranges.
+     *
+     * @return whether the file was downloaded, or null if a single stream should be used instead
+     */
+    private Boolean downloadRanged(
+            String url, Resource resource, File destination, long timestamp, DownloadCache cache)
+            throws TransferFailedException {
+        RangedDownloader downloader = new RangedDownloader(
+            getHttpClient(),
+            this.retryPolicy,
+            Properties.getDownloadRangedThreads(),
+            Properties.getDownloadRangedChunk() * 1024L * 1024L
+        );
+
+        RangedDownloader.Probe probe;
+
+        try {
+            probe = downloader.probe(url);
+        } catch (IOException ex) {
+            logDebug("downloadRanged", "Could not probe file:", ex.getMessage());
+            return null;
+        }
+
+        if (probe == null || !probe.isRangeable()
+                || probe.getSize() < Properties.getDownloadRangedThreshold() * 1024L * 1024L) {
+            return null;
+        }
+
+        if (timestamp > 0 && probe.getLastModified() > 0 && probe.getLastModified() <= timestamp) {
+            logDebug("downloadRanged", "Not modified:", url);
+            return false;
+        }
+
+        logDebug("downloadRanged", "Downloading", Long.toString(probe.getSize()), "bytes in ranges:", url);
+        long downloadStart = System.nanoTime();
+
+        try {
+            downloader.download(url, probe, destination);
+        } catch (RangedDownloader.RangeNotSupportedException ex) {
+            logDebug("downloadRanged", ex.getMessage());
+            return null;
+        } catch (IOException ex) {
+            this.metrics.recordFailure(Phase.DOWNLOAD, downloadStart);
+            logError(ex.getMessage());
+            fireTransferError(resource, ex, TransferEvent.REQUEST_GET);
+            throw new TransferFailedException("Error downloading file: ", ex);
+        }
+
+        this.metrics.record(Phase.DOWNLOAD, downloadStart, probe.getSize());
+
+        if (probe.getLastModified() > 0 && !destination.setLastModified(probe.getLastModified())) {
+            logDebug("downloadRanged", "Could not set last modified time:", destination.getName());
+        }
+
+        if (probe.getEtag() != null) {
+            ETAGS.put(url + "|" + destination.getAbsolutePath(), probe.getEtag());
+        }
+
+        if (cache != null) {
+            try (InputStream input = Files.newInputStream(destination.toPath())) {
+                cache.store(url, input, probe.getEtag(), probe.getLastModified());
+            } catch (IOException ex) {
+                logDebug("downloadRanged", "Could not cache file:", ex.getMessage());
+            }
+        }
+
+        fireGetStarted(resource, destination);
+        fireGetCompleted(resource, destination);
+        return true;
+    }
+
+    /**
+     * Write a downloaded file to its destination (via the cache, if enabled).
+     */
+    private void writeDownload(Response response, String url, File destination, DownloadCache cache)
+            throws IOException {
+        Date lastModified = response.headers().getDate("Last-Modified");
+
+        if (cache != null) {
+            DownloadCache.Entry entry = cache.store(
+                url,
+                response.body().byteStream(),
+                response.header("ETag"),
+                lastModified != null ? lastModified.getTime() : 0
+            );
+
+            if (!cache.copyTo(entry, destination)) {
+                throw new IOException("Cached file disappeared: " + url);
+            }
+
+            return;
+        }
+
+        BufferedSink sink = Okio.buffer(Okio.sink(destination));
+
+        try {
+            sink.writeAll(response.body().source());
+        } finally {
+            sink.close();
+        }
+
+        if (lastModified != null && !destination.setLastModified(lastModified.getTime())) {
+            logDebug("writeDownload", "Could not set last modified time:", destination.getName());
+        }
+    }
+
+    /**
+     * Copy a cached file to its destination, if newer than the timestamp.
+     *
+     * @return whether the file was copied, or null if the cached file was unusable
+     */
+    private Boolean copyFromCache(
+            DownloadCache cache, DownloadCache.Entry cached, Resource resource,
+            File destination, long timestamp) {
+        if (timestamp > 0 && cached.getLastModified() > 0 && cached.getLastModified() <= timestamp) {
+            return false;
+        }
+
+        try {
+            if (!cache.copyTo(cached, destination)) {
+                return null;
+            }
+        } catch (IOException ex) {
+            logDebug("copyFromCache", "Could not use cached file:", ex.getMessage());
+            return null;
+        }
+
+        fireGetStarted(resource, destination);
+        fireGetCompleted(resource, destination);
+        return true;
+    }
+
+    /**
+     * Get the download cache, if enabled.
+     */
+    private DownloadCache getDownloadCache() {
+        if (!Properties.isCacheEnabled()) {
+            return null;
+        }
+
+        return DownloadCache.forPath(
+            Paths.get(Properties.getCachePath()),
+            Properties.getCacheMaxSize() * 1024L * 1024L
+        );
+    }
+
+    /**
+     * Check if a path refers to an immutable (release) file.
+     */
+    private boolean isPathImmutable(String path) {
+        String filename = getPathFilename(path);
+        return !path.contains("-SNAPSHOT")
+            && (filename == null || !filename.startsWith(METADATA_XML));
+    }
+
+    /**
+     * Format a timestamp as an HTTP date.
+     */
+    private String formatHttpDate(long timestamp) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(timestamp));
+    }
+
+    /**
+     * Request an upload for a file from Cloudsmith and upload it.
+     */
+    private void uploadFile(
+            UploadSession session, Resource resource, ArtifactFile artifact, String filename,
+            FileType fileType, MediaType mediaType) throws TransferFailedException {
+        File source = artifact.getFile();
+        FilesCreate filesParams = new FilesCreate();
+        filesParams.setFilename(filename);
+
+        long hashStart = System.nanoTime();
+
+        try {
+            filesParams.setMd5Checksum(artifact.getMd5());
+            this.metrics.record(Phase.HASH, hashStart, artifact.getLength());
+        } catch (IOException ex) {
+            this.metrics.recordFailure(Phase.HASH, hashStart);
+            setUploadFailed(session);
+            logError("Could not calculate file checksum:", ex.getMessage());
+            fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
+            throw new TransferFailedException("Could not calculate file checksum: ", ex);
+        }
+
+        CloudsmithRepository csmRepository = session.getTarget();
+        String journaledIdentifier = lookupJournaledFile(session, artifact, filename);
+        String indexedIdentifier = journaledIdentifier != null
+            ? journaledIdentifier
+            : lookupUploadIndex(csmRepository, artifact, filename);
+
+        if (indexedIdentifier != null) {
+            setPackageFile(session, fileType, indexedIdentifier);
+            session.getIndexedIdentifiers().add(indexedIdentifier);
+
+            if (journaledIdentifier == null) {
+                recordJournaledFile(session, artifact, filename, indexedIdentifier);
+            }
+
+            firePutStarted(resource, source);
+            firePutCompleted(resource, source);
+            logInfo("Skipped upload for", filename, "(identical file already uploaded)");
+            return;
+        }
+
+        boolean isLarge = artifact.getLength() >= Properties.getUploadLargeThreshold() * 1024L * 1024L;
+        int sendAttempts = isLarge
+            ? Math.max(Properties.getUploadLargeAttempts(), Properties.getRetryMaxAttempts())
+            : Properties.getRetryMaxAttempts();
+        PackageFileUpload uploadParams = this.uploadSlots.take(csmRepository, filename, artifact);
+        boolean preallocated = uploadParams != null;
+        /* A rejected upload (e.g. expired) is retried with a fresh one; other failures were retried when sent. */
+        int uploads = (isLarge ? 2 : 1) + (preallocated ? 1 : 0);
+
+        firePutStarted(resource, source);
+        AtomicLong progress = new AtomicLong();
+
+        for (int attempt = 1;; attempt++) {
+            if (uploadParams == null) {
+                uploadParams = requestUpload(session, resource, filename, filesParams, csmRepository);
+            }
+
+            logInfo("Uploading", filename, "to", csmRepository.toString(), "...");
+            long uploadStart = System.nanoTime();
+
+            try {
+                sendUpload(
+                    resource, uploadParams, source, mediaType, filesParams.getMd5Checksum(), sendAttempts, progress
+                );
+                this.metrics.record(Phase.UPLOAD, uploadStart, artifact.getLength());
+                break;
+            } catch (IOException | CloudsmithWagonException ex) {
+                this.metrics.recordFailure(Phase.UPLOAD, uploadStart);
+
+                if (!(ex instanceof CloudsmithWagonException) || attempt >= uploads) {
+                    setUploadFailed(session);
+                    logError("Could not upload file:", ex.getMessage());
+                    fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
+                    throw new TransferFailedException("Could not upload file:", ex);
+                }
+
+                logInfo("Upload of", filename, "was rejected, requesting a fresh upload:", ex.getMessage());
+                uploadParams = null;
+            }
+        }
+
+        if (!setPackageFile(session, fileType, uploadParams.getIdentifier())) {
+            /* Not handled */
+            return;
+        }
+
+        recordUploadIndex(csmRepository, artifact, filename, uploadParams.getIdentifier());
+        session.getUploadedIdentifiers().add(uploadParams.getIdentifier());
+        recordJournaledFile(session, artifact, filename, uploadParams.getIdentifier());
+        firePutCompleted(resource, source);
+        logInfo("Uploaded", filename, "to", csmRepository.toString());
+    }
+
+    /**
+     * Request an upload (identifier and pre-signed upload details) for a file.
+     */
+    private PackageFileUpload requestUpload(
+            UploadSession session, Resource resource, String filename, FilesCreate filesParams,
+            CloudsmithRepository csmRepository) throws TransferFailedException {
+        FilesApi filesApi = new FilesApi(this.client);
+
+        logInfo("Requesting file upload for", filename, "...");
+        long requestStart = System.nanoTime();
+
+        try {
+            PackageFileUpload uploadParams = this.retryPolicy.callApi(
+                getApiHost(),
+                "file upload request for " + filename,
+                () -> filesApi.filesCreate(
+                    csmRepository.getOwnerName(),
+                    csmRepository.getRepositoryName(),
+                    filesParams
+                )
+            );
+            this.metrics.record(Phase.FILES_CREATE, requestStart, 0);
+            return uploadParams;
+        } catch (ApiException ex) {
+            this.metrics.recordFailure(Phase.FILES_CREATE, requestStart);
+            setUploadFailed(session);
+            logError("Could not request file upload:", RetryPolicy.describe(ex));
+            fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
+            throw new TransferFailedException("Could not request file upload:", ex);
+        }
+    }
+
+    /**
+     * Request uploads in the background for the files expected to be put after a file.
+     */
+    private void preallocateUploads(UploadSession session, File source, String filename) {
+        CloudsmithRepository csmRepository = session.getTarget();
+        FilesApi filesApi = new FilesApi(this.client);
+
+        this.uploadSlots.preallocateSiblings(csmRepository, session.getKey(), source, filename, filesParams -> {
+            logDebug("preallocateUploads", "Requesting file upload ahead of time for", filesParams.getFilename());
+            long requestStart = System.nanoTime();
+
+            try {
+                PackageFileUpload uploadParams = this.retryPolicy.callApi(
+                    getApiHost(),
+                    "file upload request for " + filesParams.getFilename(),
+                    () -> filesApi.filesCreate(
+                        csmRepository.getOwnerName(),
+                        csmRepository.getRepositoryName(),
+                        filesParams
+                    )
+                );
+                this.metrics.record(Phase.FILES_CREATE, requestStart, 0);
+                return uploadParams;
+            } catch (ApiException ex) {
+                this.metrics.recordFailure(Phase.FILES_CREATE, requestStart);
+                logDebug("preallocateUploads", "Could not request file upload:", RetryPolicy.describe(ex));
+                throw ex;
+            }
+        });
+    }
+
+    /**
+     * Upload a file using the pre-signed upload details.
+     */
+    private void sendUpload(
+            Resource resource, PackageFileUpload uploadParams, File source, MediaType mediaType,
+            String md5Checksum, int maxAttempts, AtomicLong progress) throws IOException, CloudsmithWagonException {
+        Builder body = new MultipartBody.Builder();
+        body.setType(MultipartBody.FORM);
+
+        @SuppressWarnings("unchecked")
+        LinkedTreeMap<String, String> o =
+            (LinkedTreeMap<String, String>) uploadParams.getUploadFields();
+        for (Entry<String, String> attr : o.entrySet()) {
+            body.addFormDataPart(attr.getKey(), attr.getValue());
+        }
+
+        TransferEvent progressEvent = new TransferEvent(
+            this, resource, TransferEvent.TRANSFER_PROGRESS, TransferEvent.REQUEST_PUT
+        );
+        progressEvent.setLocalFile(source);
+
+        body.addFormDataPart(
+            "file",
+            source.getName(),
+            new FileRequestBody(
+                mediaType,
+                source,
+                (buffer, length) -> fireTransferProgress(progressEvent, buffer, length),
+                progress,
+                Properties.isUploadVerifyEnabled() ? DigestUtils.getMd5Digest() : null,
+                md5Checksum
+            )
+        );
+        body.addFormDataPart("md5_checksum", md5Checksum);
+
+        RequestBody requestBody = body.build();
+        Request request = new Request.Builder()
+                .url(uploadParams.getUploadUrl())
+                .post(requestBody)
+                .tag(TransferTimeouts.UPLOAD)
+                .build();
+
+        ConnectionWarmer.recordUploadUrl(getCloudsmithRepository().getApiUrl(), uploadParams.getUploadUrl());
+
+        sendUploadRequest(request, source, maxAttempts);
+    }
+
+    /**
+     * Send an upload request (and check the response).
+     */
+    private void sendUploadRequest(Request request, File source, int maxAttempts)
+            throws IOException, CloudsmithWagonException {
+        OkHttpClient httpclient = getHttpClient();
+        UploadLimiter limiter = UploadLimiter.getShared();
+        Response response = null;
+
+        try {
+            response = this.retryPolicy.callHttp(
+                httpclient, request, maxAttempts, limiter != null ? limiter.forUpload(source.length()) : null
+            );
+
+            if (RetryPolicy.isRetryableStatus(response.code())) {
+                /* Already retried, and a fresh upload wouldn't help. */
+                throw new IOException("Failed to upload file: " + source.getName() + " (HTTP " + response.code() + ")");
+            }
+
+            checkUploadSuccess(response, source);
+        } finally {
+            if (response != null) {
+                response.body().close();
+            }
+        }
+    }
+
+    /**
+     * Look up the identifier of an identical, previously uploaded file.
+     */
+    private String lookupUploadIndex(CloudsmithRepository csmRepository, ArtifactFile artifact, String filename) {
+        UploadIndex index = UploadIndex.getShared();
+        if (index == null) {
+            return null;
+        }
+
+        try {
+            return index.lookup(
+                csmRepository.getOwnerName(),
+                csmRepository.getRepositoryName(),
+                filename,
+                artifact.getSha256(),
+                artifact.getMd5()
+            );
+        } catch (IOException ex) {
+            logDebug("lookupUploadIndex", "Could not read upload index:", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Record an uploaded file in the upload index.
+     */
+    private void recordUploadIndex(
+            CloudsmithRepository csmRepository, ArtifactFile artifact, String filename, String identifier) {
+        UploadIndex index = UploadIndex.getShared();
+        if (index == null) {
+            return;
+        }
+
+        try {
+            index.record(
+                csmRepository.getOwnerName(),
+                csmRepository.getRepositoryName(),
+                filename,
+                artifact.getSha256(),
+                artifact.getMd5(),
+                identifier,
+                TimeUnit.SECONDS.toMillis(Properties.getUploadDedupTtl())
+            );
+        } catch (IOException ex) {
+            logDebug("recordUploadIndex", "Could not write upload index:", ex.getMessage());
+        }
+    }
+
+    /**
+     * Get the deploy journal, if enabled.
+     */
+    private DeployJournal getDeployJournal() {
+        if (!Properties.isJournalEnabled()) {
+            return null;
+        }
+
+        return DeployJournal.forPath(Paths.get(Properties.getJournalPath()));
+    }
+
+    /**
+     * Look up the package that a file was already deployed in, per the journal.
+     *
+     * <p>A release can't be deployed again, so once its package has been
+     * created all of its files are skipped; files for a snapshot are only
+     * skipped if they haven't changed. Either way, the package must still
+     * exist upstream (e.g. it wasn't deleted since).</p>
+     */
+    private String lookupJournaledPackage(UploadSession session, ArtifactFile artifact, String filename) {
+        DeployJournal journal = getDeployJournal();
+        if (journal == null) {
+            return null;
+        }
+
+        String packageKey = session.getQualifiedKey();
+
+        try {
+            String slug = journal.lookupPackage(packageKey);
+
+            if (slug == null || (session.getKey().endsWith("-SNAPSHOT")
+                    && !journal.hasPackageFile(packageKey, filename, artifact.getSha256()))) {
+                return null;
+            }
+
+            if (slug.equals(session.getJournaledSlug()) || isPackagePresent(session.getTarget(), slug)) {
+                return slug;
+            }
+
+            journal.removePackage(packageKey);
+        } catch (IOException ex) {
+            logDebug("lookupJournaledPackage", "Could not read deploy journal:", ex.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if a package still exists upstream.
+     */
+    private boolean isPackagePresent(CloudsmithRepository csmRepository, String slug) {
+        PackagesApi packagesApi = new PackagesApi(this.client);
+
+        try {
+            this.retryPolicy.callApi(
+                getApiHost(),
+                "package status for " + slug,
+                () -> packagesApi.packagesStatus(
+                    csmRepository.getOwnerName(),
+                    csmRepository.getRepositoryName(),
+                    slug
+                )
+            );
+            return true;
+        } catch (ApiException ex) {
+            if (ex.getCode() == HTTP_NOT_FOUND) {
+                logInfo("Package", slug, "in the deploy journal no longer exists, deploying it again");
+            } else {
+                logDebug("isPackagePresent", "Could not check for package:", RetryPolicy.describe(ex));
+            }
+
+            /* Only skip files for a package that's known to exist. */
+            return false;
+        }
+    }
+
+    /**
+     * Look up the identifier of a file already uploaded for a package, per the journal.
+     */
+    private String lookupJournaledFile(UploadSession session, ArtifactFile artifact, String filename) {
+        DeployJournal journal = getDeployJournal();
+        if (journal == null) {
+            return null;
+        }
+
+        try {
+            String sha256 = artifact.getSha256();
+            String identifier = journal.lookupFile(session.getQualifiedKey(), filename, sha256);
+
+            if (identifier != null) {
+                session.addFileChecksum(filename, sha256);
+            }
+
+            return identifier;
+        } catch (IOException ex) {
+            logDebug("lookupJournaledFile", "Could not read deploy journal:", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Record a file uploaded for a package in the journal.
+     */
+    private void recordJournaledFile(
+            UploadSession session, ArtifactFile artifact, String filename, String identifier) {
+        DeployJournal journal = getDeployJournal();
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            String sha256 = artifact.getSha256();
+            session.addFileChecksum(filename, sha256);
+            journal.recordFile(
+                session.getQualifiedKey(),
+                filename,
+                sha256,
+                identifier,
+                TimeUnit.SECONDS.toMillis(Properties.getJournalTtl())
+            );
+        } catch (IOException ex) {
+            logDebug("recordJournaledFile", "Could not write deploy journal:", ex.getMessage());
+        }
+    }
+
+    /**
+     * Record a created package in the journal.
+     */
+    private void recordJournaledPackage(UploadSession session, String slug) {
+        DeployJournal journal = getDeployJournal();
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.recordPackage(
+                session.getQualifiedKey(),
+                slug,
+                session.getFileChecksums(),
+                TimeUnit.SECONDS.toMillis(Properties.getJournalPackageTtl())
+            );
+        } catch (IOException ex) {
+            logDebug("recordJournaledPackage", "Could not write deploy journal:", ex.getMessage());
+        }
+    }
+
+    /**
+     * Upload the files of a session that were skipped because of the journal.
+     */
+    private void uploadJournaledFiles(UploadSession session) throws TransferFailedException {
+        for (Callable<Void> upload : session.drainJournaledUploads()) {
+            try {
+                upload.call();
+            } catch (TransferFailedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                setUploadFailed(session);
+                throw new TransferFailedException("Could not upload file: ", ex);
+            }
+        }
+    }
+
+    /**
+     * Evict identifiers used from the upload index and journal (e.g. because they were rejected).
+     */
+    private void evictIndexedIdentifiers(UploadSession session) {
+        UploadIndex index = UploadIndex.getShared();
+        DeployJournal journal = getDeployJournal();
+        if ((index == null && journal == null) || session.getIndexedIdentifiers().isEmpty()) {
+            return;
+        }
+
+        for (String identifier : session.getIndexedIdentifiers()) {
+            try {
+                if (index != null) {
+                    index.evict(identifier);
+                }
+
+                if (journal != null) {
+                    journal.evict(identifier);
+                }
+            } catch (IOException ex) {
+                logDebug("evictIndexedIdentifiers", "Could not write upload index:", ex.getMessage());
+            }
+        }
+
+        logError(
+            "Package used previously uploaded files that may have expired;",
+            "they have been evicted from the upload index (and deploy journal), please retry."
+        );
+    }
+
+    /**
+     * Evict the files attached to a package from the upload index, once the package has been created.
+     *
+     * <p>An uploaded file can only be attached to one package, so it can't be reused after that.</p>
+     */
+    private void consumeIndexedIdentifiers(UploadSession session) {
+        UploadIndex index = UploadIndex.getShared();
+        if (index == null) {
+            return;
+        }
+
+        Set<String> identifiers = new HashSet<>(session.getIndexedIdentifiers());
+        identifiers.addAll(session.getUploadedIdentifiers());
+
+        for (String identifier : identifiers) {
+            try {
+                index.evict(identifier);
+            } catch (IOException ex) {
+                logDebug("consumeIndexedIdentifiers", "Could not write upload index:", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Attach an uploaded file to the package being built.
+     */
+    private boolean setPackageFile(UploadSession session, FileType fileType, String identifier) {
+        PackagesUploadMaven packageParams = session.getPackageParams();
+
+        synchronized (packageParams) {
+            if (fileType != FileType.UNK) {
+                session.setUploaded();
+            }
+
+            switch (fileType) {
+                case POM:
+                    packageParams.setPomFile(identifier);
+                    return true;
+
+                case PKG:
+                    packageParams.setPackageFile(identifier);
+                    return true;
+
+                case DOC:
+                    packageParams.setJavadocFile(identifier);
+                    return true;
+
+                case SRC:
+                    packageParams.setSourcesFile(identifier);
+                    return true;
+
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Get (or create) the bounded worker pool for asynchronous uploads.
+     */
+    private synchronized ExecutorService getUploadExecutor() {
+        if (this.uploadExecutor == null) {
+            int threads = Properties.getUploadAsyncThreads();
+            if (UploadLimiter.getShared() != null) {
+                /* Leave room for the limiter to grow the concurrency into. */
+                threads = Math.max(threads, Properties.getUploadAdaptiveMax());
+            }
 
-        OkHttpClient httpclient = getHttpClient();
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                runnable -> {
+                    Thread thread = new Thread(
+                        runnable, "cloudsmith-upload-" + threadCount.incrementAndGet()
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+            );
+            executor.allowCoreThreadTimeOut(true);
+            this.uploadExecutor = executor;
+        }
 
-        fireGetStarted(resource, destination);
-        Response response = null;
-        BufferedSink sink = null;
+        return this.uploadExecutor;
+    }
 
-        try {
-            response = httpclient.newCall(request).execute();
-            sink = Okio.buffer(Okio.sink(destination));
-            sink.writeAll(response.body().source());
-        } catch (IOException ex) {
-            logError(ex.getMessage());
-            fireTransferError(resource, ex, TransferEvent.REQUEST_GET);
-            throw new TransferFailedException("Error downloading file: ", ex);
-        } finally {
-            if (response != null) {
-                response.body().close();
-            }
+    /**
+     * Wait for the queued asynchronous uploads of every session to complete.
+     */
+    private void awaitAllPendingUploads() throws TransferFailedException {
+        TransferFailedException failure = null;
 
+        for (UploadSession session : this.sessions.values()) {
             try {
-                if (sink != null) {
-                    sink.close();
+                awaitPendingUploads(session);
+            } catch (TransferFailedException ex) {
+                if (failure == null) {
+                    failure = ex;
                 }
-            } catch (IOException ex) {
-                /* Absorb */
             }
         }
 
-        fireGetCompleted(resource, destination);
+        if (failure != null) {
+            throw failure;
+        }
     }
 
-    @Override
-    public boolean getIfNewer(String resourceName, File destination, long timestamp)
-            throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException {
-        logDebug(
-            "getIfNewer",
-            "\n  ResourceName =", resourceName,
-            "\n  Destination  =", destination.getName(),
-            "\n  Timestamp    =", Long.toString(timestamp)
-        );
+    /**
+     * Wait for the queued asynchronous uploads of a session to complete.
+     */
+    private void awaitPendingUploads(UploadSession session) throws TransferFailedException {
+        TransferFailedException failure = null;
 
-        return false;
-    }
+        for (Future<Void> upload : session.drainPendingUploads()) {
+            try {
+                upload.get();
+            } catch (ExecutionException ex) {
+                setUploadFailed(session);
+                if (failure == null) {
+                    if (ex.getCause() instanceof TransferFailedException) {
+                        failure = (TransferFailedException) ex.getCause();
+                    } else {
+                        failure = new TransferFailedException("Could not upload file: ", ex.getCause());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                setUploadFailed(session);
+                throw new TransferFailedException("Interrupted waiting for uploads: ", ex);
+            }
+        }
 
-    @Override
-    public void put(File source, String destination)
-            throws TransferFailedException, ResourceDoesNotExistException,
-                   AuthorizationException {
-        if (isPathMetadataXml(destination)) {
-            /* This should be the last file in a normal upload. */
-            finalisePackage();
-            resetState();
-            return;
+        if (failure != null) {
+            throw failure;
         }
+    }
 
-        logDebug(
-            "put",
-            "\n  Source      =", source.getName(),
-            "\n  Destination =", destination
-        );
+    /**
+     * Report on the packages with a deferred sync wait that have finished (failing if any of them failed).
+     *
+     * <p>Maven ignores failures when disconnecting, so they can only fail the build from a put.</p>
+     *
+     * @param wait whether to wait for the packages that are still synchronising
+     */
+    private void reportDeferredPackages(boolean wait) throws TransferFailedException {
+        DeferredSyncWaits deferred = DeferredSyncWaits.getInstance();
 
-        FileType fileType = FileType.UNK;
-        Resource resource = getResourceFromFile(source);
-        String filename = getPathFilename(destination);
-        MediaType mediaType = null;
+        if (wait && deferred.getRemaining() > 0) {
+            logInfo("Waiting for", Integer.toString(deferred.getRemaining()), "earlier package(s) to synchronise ...");
+        }
 
-        if (filename != null) {
-            try {
-                mediaType = getFileMediaType(source);
-                fileType = determineFileType(mediaType, source, filename);
-            } catch (IOException ex) {
-                setUploadFailed(true);
-                logError("Could not determine file type:", ex.getMessage());
-                fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
-                throw new TransferFailedException("Could not determine file type: ", ex);
+        List<SyncWaiter.Result> results = wait ? deferred.takeAll() : deferred.takeCompleted();
+        SyncWaiter.Result failed = null;
+        int failures = 0;
+
+        for (SyncWaiter.Result result : results) {
+            if (result.isSuccess()) {
+                this.metrics.record(Phase.SYNC_WAIT, result.getStartedAt(), 0);
+                logInfo("Synchronised:", result.getPackage().toString());
+            } else {
+                failures++;
+                failed = failed != null ? failed : result;
+                this.metrics.recordFailure(Phase.SYNC_WAIT, result.getStartedAt());
+                logError("Failed to synchronise:", result.getPackage().toString(), "-", result.getMessage());
             }
         }
 
-        if (fileType == FileType.UNK) {
-            logDebug("put", "Skipping unsupported file:", source.getName());
-            return;
+        if (failed != null) {
+            throw new TransferFailedException(
+                failures + " of " + results.size() + " earlier package(s) failed to synchronise, including "
+                + failed.getPackage() + ": " + failed.getMessage()
+            );
         }
+    }
 
-        firePutInitiated(resource, source);
-        FilesCreate filesParams = new FilesCreate();
-        filesParams.setFilename(source.getName());
-
-        try {
-            filesParams.setMd5Checksum(getChecksum(source));
-        } catch (IOException ex) {
-            setUploadFailed(true);
-            logError("Could not calculate file checksum:", ex.getMessage());
-            fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
-            throw new TransferFailedException("Could not calculate file checksum: ", ex);
+    /**
+     * Get (or create) the sessions for a package, one for each target repository.
+     */
+    private List<UploadSession> getSessions(String key) {
+        List<UploadSession> targetSessions = new ArrayList<>();
+
+        for (CloudsmithRepository target : getCloudsmithRepository().getTargets()) {
+            targetSessions.add(this.sessions.computeIfAbsent(
+                UploadSession.getQualifiedKey(key, target),
+                qualifiedKey -> new UploadSession(key, target)
+            ));
         }
 
-        FilesApi filesApi = new FilesApi(this.client);
-        CloudsmithRepository csmRepository = getCloudsmithRepository();
-        PackageFileUpload uploadParams;
-
-        logInfo("Requesting file upload for", filename, "...");
+        return targetSessions;
+    }
 
-        try {
-            uploadParams = filesApi.filesCreate(
-                csmRepository.getOwnerName(),
-                csmRepository.getRepositoryName(),
-                filesParams
-            );
-        } catch (ApiException ex) {
-            setUploadFailed(true);
-            logError("Could not request file upload:", ex.getResponseBody());
-            fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
-            throw new TransferFailedException("Could not request file upload:", ex);
+    /**
+     * Check if the upload of a package (to any target repository) has failed.
+     */
+    private boolean isUploadFailed(String key) {
+        for (UploadSession session : this.sessions.values()) {
+            if (session.getKey().equals(key) && session.isFailed()) {
+                return true;
+            }
         }
 
-        String identifier = uploadParams.getIdentifier();
-        switch (fileType) {
-            case POM:
-                this.packageParams.setPomFile(identifier);
-                break;
+        return false;
+    }
 
-            case PKG:
-                this.packageParams.setPackageFile(identifier);
-                break;
+    /**
+     * Upload a file to several target repositories at once.
+     */
+    private void uploadToTargets(
+            List<UploadSession> targetSessions, Resource resource, ArtifactFile artifact,
+            String filename, FileType fileType, MediaType mediaType) throws TransferFailedException {
+        List<Future<Void>> uploads = new ArrayList<>();
+
+        for (UploadSession session : targetSessions) {
+            uploads.add(getUploadExecutor().submit(() -> {
+                uploadFile(session, resource, artifact, filename, fileType, mediaType);
+                return null;
+            }));
+        }
 
-            case DOC:
-                this.packageParams.setJavadocFile(identifier);
-                break;
+        awaitTargets(targetSessions, uploads, "upload " + filename + " to");
+    }
 
-            case SRC:
-                this.packageParams.setSourcesFile(identifier);
-                break;
+    /**
+     * Finalise the sessions for the packages that metadata was put for.
+     *
+     * <p>If there are several (e.g. one for each target repository), they're
+     * finalised at once.</p>
+     */
+    private void finaliseSessions(String metadataKey) throws TransferFailedException {
+        List<UploadSession> finalised = new ArrayList<>();
 
-            default:
-                /* Not handled */
-                return;
+        for (Map.Entry<String, UploadSession> entry : this.sessions.entrySet()) {
+            UploadSession session = entry.getValue();
+            if (session.isFinalisedBy(metadataKey) && this.sessions.remove(entry.getKey(), session)) {
+                finalised.add(session);
+            }
         }
 
-        Builder body = new MultipartBody.Builder();
-        body.setType(MultipartBody.FORM);
+        /* Let the earlier packages synchronise while this one was uploaded, but no longer. */
+        reportDeferredPackages(!finalised.isEmpty());
 
-        @SuppressWarnings("unchecked")
-        LinkedTreeMap<String, String> o =
-            (LinkedTreeMap<String, String>) uploadParams.getUploadFields();
-        for (Entry<String, String> attr : o.entrySet()) {
-            body.addFormDataPart(attr.getKey(), attr.getValue());
+        if (finalised.isEmpty()) {
+            return;
         }
 
-        body.addFormDataPart(
-            "file", source.getName(), RequestBody.create(mediaType, source)
+        if (finalised.size() == 1) {
+            finalisePackage(finalised.get(0));
+            return;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            finalised.size(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cloudsmith-finalise-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
         );
-        body.addFormDataPart("md5_checksum", filesParams.getMd5Checksum());
 
-        RequestBody requestBody = body.build();
-        Request request = new Request.Builder()
-                .url(uploadParams.getUploadUrl())
-                .post(requestBody)
-                .build();
+        try {
+            List<Future<Void>> finalisations = new ArrayList<>();
 
-        OkHttpClient httpclient = getHttpClient();
+            for (UploadSession session : finalised) {
+                finalisations.add(executor.submit(() -> {
+                    finalisePackage(session);
+                    return null;
+                }));
+            }
 
-        firePutStarted(resource, source);
-        Response response = null;
+            awaitTargets(finalised, finalisations, "create package in");
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-        logInfo("Uploading", filename, "...");
+    /**
+     * Wait for the work for each target session, reporting any failures per target.
+     */
+    private void awaitTargets(List<UploadSession> targetSessions, List<Future<Void>> work, String action)
+            throws TransferFailedException {
+        TransferFailedException failure = null;
+        int failures = 0;
 
-        try {
-            response = httpclient.newCall(request).execute();
-            checkUploadSuccess(response, source);
-        } catch (IOException | CloudsmithWagonException ex) {
-            setUploadFailed(true);
-            logError("Could not upload file:", ex.getMessage());
-            fireTransferError(resource, ex, TransferEvent.REQUEST_PUT);
-            throw new TransferFailedException("Could not upload file:", ex);
-        } finally {
-            if (response != null) {
-                response.body().close();
+        for (int i = 0; i < work.size(); i++) {
+            UploadSession session = targetSessions.get(i);
+
+            try {
+                work.get(i).get();
+            } catch (ExecutionException ex) {
+                failures++;
+                setUploadFailed(session);
+                logError("Could not", action, session.getTarget().toString() + ":", ex.getCause().getMessage());
+
+                if (failure == null) {
+                    if (ex.getCause() instanceof TransferFailedException) {
+                        failure = (TransferFailedException) ex.getCause();
+                    } else {
+                        failure = new TransferFailedException("Could not " + action + " target: ", ex.getCause());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new TransferFailedException("Interrupted waiting for targets: ", ex);
             }
         }
 
-        firePutCompleted(resource, source);
-        logInfo("Uploaded", filename);
-    }
-
-    @Override
-    public void closeConnection() throws ConnectionException {
+        if (failure != null) {
+            logError(
+                "Failed for", Integer.toString(failures),
+                "of", Integer.toString(work.size()), "target repositories"
+            );
+            throw failure;
+        }
     }
 
-    // helper methods
-
     /**
-     * Finalise the uploaded files into a Cloudsmith package.
+     * Finalise the uploaded files of a session into a Cloudsmith package.
      */
-    private void finalisePackage() throws TransferFailedException {
-        if (uploadFailed) {
-            logDebug("finalisePackage", "Upload had failed, skipping finalisation.");
+    private void finalisePackage(UploadSession session) throws TransferFailedException {
+        awaitPendingUploads(session);
+
+        if (session.isFailed()) {
+            logDebug("finalisePackage", "Upload had failed, skipping finalisation of", session.getKey());
             return;
         }
 
-        if (this.packageParams.getPackageFile() == null) {
-            logDebug("finalisePackage", "No package JAR, skipping finalisation.");
+        String journaledSlug = session.getJournaledSlug();
+
+        if (journaledSlug != null) {
+            if (!session.isUploaded()) {
+                logInfo("Skipped creating", session.getKey(), "(already deployed as", journaledSlug + ")");
+                return;
+            }
+
+            /* Some files changed since the package was created, so it's needed after all. */
+            uploadJournaledFiles(session);
+        }
+
+        PackagesUploadMaven packageParams = session.getPackageParams();
+
+        if (packageParams.getPackageFile() == null) {
+            logDebug("finalisePackage", "No package JAR, skipping finalisation of", session.getKey());
             return;
         }
 
-        if (this.packageParams.getPomFile() == null) {
-            logDebug("finalisePackage", "No package POM, skipping finalisation.");
+        if (packageParams.getPomFile() == null) {
+            logDebug("finalisePackage", "No package POM, skipping finalisation of", session.getKey());
             return;
         }
 
-        logInfo("Creating a new Maven package ...");
+        CloudsmithRepository csmRepository = session.getTarget();
+        logInfo("Creating a new Maven package in", csmRepository.toString(), "...");
 
-        CloudsmithRepository csmRepository = getCloudsmithRepository();
         PackagesApi packagesApi = new PackagesApi(this.client);
         MavenPackageUpload packageData;
+        long createStart = System.nanoTime();
 
         try {
-            packageData =
-                packagesApi.packagesUploadMaven(
+            packageData = this.retryPolicy.callApi(
+                getApiHost(),
+                "package creation",
+                () -> packagesApi.packagesUploadMaven(
                     csmRepository.getOwnerName(),
                     csmRepository.getRepositoryName(),
-                    this.packageParams);
+                    packageParams
+                ),
+                false
+            );
             logDebug("finalisePackage", packageData.toString());
+            this.metrics.record(Phase.PACKAGE_CREATE, createStart, 0);
+            recordJournaledPackage(session, packageData.getSlug());
+            consumeIndexedIdentifiers(session);
         } catch (ApiException ex) {
-            setUploadFailed(true);
-            logError("Could not create package:", ex.getResponseBody());
+            this.metrics.recordFailure(Phase.PACKAGE_CREATE, createStart);
+            setUploadFailed(session);
+            logError("Could not create package:", RetryPolicy.describe(ex));
+            evictIndexedIdentifiers(session);
             throw new TransferFailedException("Could not create package: ", ex);
         }
 
@@ -371,11 +1561,15 @@ public class CloudsmithWagon extends AbstractWagon {
         boolean syncWaitVerboseEnabled = Properties.isSyncWaitVerbose();
         int syncWaitInterval = Properties.getSyncWaitInterval();
 
-        if (syncWaitEnabled && syncWaitInterval > 0) {
+        if (syncWaitEnabled && syncWaitInterval > 0 && Properties.isSyncWaitDeferred()) {
+            deferSyncWait(packagesApi, csmRepository, packageData.getSlug(), session.getKey());
+        } else if (syncWaitEnabled && syncWaitInterval > 0) {
             if (syncWaitVerboseEnabled) {
                 logInfo("Waiting for the package to synchronise ...");
             }
 
+            long waitStart = System.nanoTime();
+
             try {
                 PackageStatus status = null;
 
@@ -387,12 +1581,15 @@ public class CloudsmithWagon extends AbstractWagon {
                         }
                     }
 
-                    status =
-                        packagesApi.packagesStatus(
+                    status = this.retryPolicy.callApi(
+                        getApiHost(),
+                        "package status",
+                        () -> packagesApi.packagesStatus(
                             csmRepository.getOwnerName(),
                             csmRepository.getRepositoryName(),
                             packageData.getSlug()
-                        );
+                        )
+                    );
 
                     if (syncWaitVerboseEnabled) {
                         logInfo(
@@ -404,9 +1601,16 @@ public class CloudsmithWagon extends AbstractWagon {
                     }
                 } while (!status.getIsSyncCompleted()
                          && !status.getIsSyncFailed());
+
+                if (status.getIsSyncFailed()) {
+                    this.metrics.recordFailure(Phase.SYNC_WAIT, waitStart);
+                } else {
+                    this.metrics.record(Phase.SYNC_WAIT, waitStart, 0);
+                }
             } catch (ApiException ex) {
-                setUploadFailed(true);
-                logError("Could not wait for package:", ex.getResponseBody());
+                this.metrics.recordFailure(Phase.SYNC_WAIT, waitStart);
+                setUploadFailed(session);
+                logError("Could not wait for package:", RetryPolicy.describe(ex));
                 throw new TransferFailedException("Could not wait for package:", ex);
             }
         } else {
@@ -426,26 +1630,54 @@ public class CloudsmithWagon extends AbstractWagon {
     }
 
     /**
-     * Calculate the MD5 checksum for a file.
+     * Wait for a package to synchronise in the background, reporting on it from a later put.
      */
-    private String getChecksum(File file) throws IOException {
-        FileInputStream stream = new FileInputStream(file);
-        return DigestUtils.md5Hex(stream);
+    private void deferSyncWait(
+            PackagesApi packagesApi, CloudsmithRepository csmRepository, String slug, String name) {
+        boolean syncWaitVerboseEnabled = Properties.isSyncWaitVerbose();
+        SyncWaiter waiter = new SyncWaiter(
+            packagesApi,
+            this.retryPolicy,
+            getApiHost(),
+            Properties.getSyncWaitInterval(),
+            Properties.getSyncWaitMaxInterval()
+        );
+        SyncWaiter.PendingPackage pending = new SyncWaiter.PendingPackage(
+            csmRepository.getOwnerName(),
+            csmRepository.getRepositoryName(),
+            slug,
+            name
+        );
+
+        DeferredSyncWaits.getInstance().add(waiter.submit(pending, (ignored, status) -> {
+            if (syncWaitVerboseEnabled) {
+                logInfo(
+                    pending.getSlug(), ":",
+                    "Status =", status.getStatusStr(),
+                    ", Stage =", status.getStageStr(),
+                    ", Progress =", String.valueOf(status.getSyncProgress()),
+                    "%"
+                );
+            }
+        }));
+
+        if (syncWaitVerboseEnabled) {
+            logInfo("Waiting for the package to synchronise in the background");
+        }
     }
 
     /**
      * Determine filetype of artifact.
      */
-    private FileType determineFileType(
-            MediaType mediaType, File source, String filename) throws IOException {
+    private FileType determineFileType(ArtifactClassifier.Kind kind, File source) {
         FileType fileType = FileType.UNK;
         String sourceName = getPathFilename(source.getName());
 
         if (sourceName != null) {
-            if (isFilePomLike(mediaType, filename)) {
+            if (kind == ArtifactClassifier.Kind.POM) {
                 // The package POM
                 fileType = FileType.POM;
-            } else if (isFileJarLike(mediaType, filename)) {
+            } else if (kind == ArtifactClassifier.Kind.ARCHIVE) {
                 // The package, javadoc, sources or tests Java archive
                 if (sourceName.contains("-javadoc.")) {
                     fileType = FileType.DOC;
@@ -460,46 +1692,6 @@ public class CloudsmithWagon extends AbstractWagon {
         return fileType;
     }
 
-    /**
-     * Check if a file is a JAR-like type.
-     */
-    private boolean isFileJarLike(MediaType mediaType, String filename) {
-        for (MediaType jarMediaType : MEDIA_TYPE_JAR_LIKES) {
-            if (mediaType.equals(jarMediaType)) {
-                return true;
-            }
-        }
-
-        String extension = getFileExtension(filename);
-        return (extension != null && extension.toLowerCase(Locale.ROOT).endsWith("ar"));
-    }
-
-    /**
-     * Check if a file is a POM-like type.
-     */
-    private boolean isFilePomLike(MediaType mediaType, String filename) {
-        for (MediaType pomMediaType : MEDIA_TYPE_POM_LIKES) {
-            if (mediaType.equals(pomMediaType)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Get the file extension for a filename.
-     */
-    private String getFileExtension(String filename) {
-        int k = filename.lastIndexOf('.');
-
-        if (k > 0) {
-            return filename.substring(k + 1);
-        } else {
-            return null;
-        }
-    }
-
     /**
      * Create a Resource object from a file.
      */
@@ -512,14 +1704,10 @@ public class CloudsmithWagon extends AbstractWagon {
 
 
     /**
-     * Create a new HTTP client.
+     * Get the (shared) HTTP client.
      */
     OkHttpClient getHttpClient() {
-        return new OkHttpClient.Builder()
-            .connectTimeout(Properties.getHttpConnectTimeout(), TimeUnit.SECONDS)
-            .readTimeout(Properties.getHttpReadTimeout(), TimeUnit.SECONDS)
-            .writeTimeout(Properties.getHttpWriteTimeout(), TimeUnit.SECONDS)
-            .build();
+        return HttpClients.getSharedClient();
     }
 
     /**
@@ -563,8 +1751,9 @@ public class CloudsmithWagon extends AbstractWagon {
      * Reset state for the wagon.
      */
     private void resetState() {
-        this.uploadFailed = false;
-        this.packageParams = new PackagesUploadMaven();
+        this.sessions.clear();
+        this.uploadSlots.clear();
+        this.failedSessions.set(0);
     }
 
     /**
@@ -585,6 +1774,7 @@ public class CloudsmithWagon extends AbstractWagon {
                 Properties.getApiVersion()
             )
         );
+        HttpClients.configureApiClient(this.client);
     }
 
     /**
@@ -616,12 +1806,121 @@ public class CloudsmithWagon extends AbstractWagon {
      */
     private CloudsmithRepository getCloudsmithRepository() {
         if (this.repository == null) {
-            this.repository = new CloudsmithRepository(getRepository());
+            this.repository = CloudsmithRepository.of(getRepository());
         }
 
         return this.repository;
     }
 
+    /**
+     * Get the host of the Cloudsmith API (for retries and circuit breaking).
+     */
+    private String getApiHost() {
+        String apiUrl = getCloudsmithRepository().getApiUrl();
+
+        try {
+            String host = new URI(apiUrl).getHost();
+            return host != null ? host : apiUrl;
+        } catch (URISyntaxException ex) {
+            return apiUrl;
+        }
+    }
+
+    /**
+     * Write the transfer metrics for the process so far to a JSON report, if enabled.
+     */
+    private void writeMetricsReport() {
+        String reportPath = Properties.getMetricsReport();
+        if (reportPath == null || reportPath.isEmpty()) {
+            return;
+        }
+
+        CloudsmithRepository csmRepository = getCloudsmithRepository();
+        REPORTED_REPOSITORIES.add(csmRepository.getOwnerName() + "/" + csmRepository.getRepositoryName());
+
+        if (this.failedSessions.get() > 0) {
+            REPORTED_UPLOAD_FAILED.set(true);
+        }
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("wagon_version", Properties.getVersion());
+        details.put("api_url", csmRepository.getApiUrl());
+        details.put("repositories", new ArrayList<>(REPORTED_REPOSITORIES));
+        details.put("upload_failed", REPORTED_UPLOAD_FAILED.get());
+
+        try {
+            /* Rewritten at each disconnect, so it's complete whenever the build ends. */
+            TransferMetrics.getGlobal().writeReport(Paths.get(reportPath), details);
+            logDebug("writeMetricsReport", "Wrote metrics report:", reportPath);
+        } catch (IOException ex) {
+            logError("Could not write metrics report:", ex.getMessage());
+        }
+    }
+
+    /**
+     * Fetch the base CDN URL in the background, while the first upload runs.
+     */
+    private synchronized void prefetchCdnUrl() {
+        if (this.cdnPrefetch != null || (this.cdnUrl != null && !this.cdnUrl.isEmpty())) {
+            return;
+        }
+
+        this.cdnPrefetch = CompletableFuture.runAsync(() -> {
+            try {
+                getCdnUrl();
+            } catch (ApiException | URISyntaxException ex) {
+                /* Absorb - it'll be fetched (and reported) again when needed. */
+                logDebug("prefetchCdnUrl", "Could not prefetch CDN URL:", ex.getMessage());
+            }
+        }, ConnectionWarmer.getExecutor());
+    }
+
+    /**
+     * Warm up the connections to the API, upload and CDN hosts in the background.
+     *
+     * <p>The repository metadata is fetched first, since that's needed for the
+     * CDN URL (and opens the API connection itself, if not cached). The upload
+     * host is only known once something has been uploaded via the API.</p>
+     */
+    private void warmUp() {
+        String apiUrl = getCloudsmithRepository().getApiUrl();
+        long warmupStart = System.nanoTime();
+
+        prefetchCdnUrl();
+        CompletableFuture<Void> metadata = this.cdnPrefetch != null
+            ? this.cdnPrefetch
+            : CompletableFuture.completedFuture(null);
+
+        List<CompletableFuture<Void>> warming = new ArrayList<>();
+        warming.add(metadata.thenCompose(ignored -> ConnectionWarmer.warm(this.client.getHttpClient(), apiUrl)));
+        warming.add(metadata.thenCompose(ignored -> {
+            String baseUrl = this.cdnUrl;
+            return baseUrl == null || baseUrl.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : ConnectionWarmer.warm(getHttpClient(), baseUrl);
+        }));
+
+        String uploadOrigin = ConnectionWarmer.getUploadOrigin(apiUrl);
+        if (uploadOrigin != null) {
+            warming.add(ConnectionWarmer.warm(getHttpClient(), uploadOrigin));
+        }
+
+        List<CompletableFuture<Void>> warmed = new ArrayList<>();
+        for (CompletableFuture<Void> future : warming) {
+            warmed.add(future.exceptionally(ex -> {
+                /* Absorb - the connection will be opened when needed. */
+                logDebug("warmUp", "Could not warm up connection:", ex.getMessage());
+                return null;
+            }));
+        }
+
+        CompletableFuture.allOf(warmed.toArray(new CompletableFuture<?>[0])).thenRun(() -> logDebug(
+            "warmUp",
+            "Finished warming up", Integer.toString(warmed.size()), "connections in",
+            Long.toString(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - warmupStart)), "ms"
+        ));
+    }
+
     /**
      * Get the base CDN URL (for downloads) from the Cloudsmith repository.
      */
@@ -630,12 +1929,20 @@ public class CloudsmithWagon extends AbstractWagon {
             CloudsmithRepository csmRepository = getCloudsmithRepository();
 
             ReposApi reposApi = new ReposApi(this.client);
-            Repository upstream = reposApi.reposRead(
-                csmRepository.getOwnerName(),
-                csmRepository.getRepositoryName());
+            String upstreamCdnUrl = MetadataCache.getInstance().getCdnUrl(
+                csmRepository,
+                () -> this.retryPolicy.callApi(
+                    getApiHost(),
+                    "repository details",
+                    () -> reposApi.reposRead(
+                        csmRepository.getOwnerName(),
+                        csmRepository.getRepositoryName()
+                    )
+                )
+            );
 
             // TODO(ls): Error handling
-            URIBuilder builder = new URIBuilder(upstream.getCdnUrl());
+            URIBuilder builder = new URIBuilder(upstreamCdnUrl);
             URI uri = builder.setPath(builder.getPath() + "/maven")
                 .build().normalize();
             this.cdnUrl = uri.toString();
@@ -681,16 +1988,11 @@ public class CloudsmithWagon extends AbstractWagon {
     }
 
     /**
-     * Determine the media type for a local file.
-     */
-    private MediaType getFileMediaType(File file) throws IOException {
-        return MediaType.parse(TIKA.detect(file));
-    }
-
-    /**
-     * Flag the Wagon operation as failed.
+     * Flag the upload of a package as failed.
      */
-    private void setUploadFailed(boolean state) {
-        this.uploadFailed = state;
+    private void setUploadFailed(UploadSession session) {
+        if (session.setFailed()) {
+            this.failedSessions.incrementAndGet();
+        }
     }
 }
@@ -0,0 +1,138 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+
+/**
+ * Opens connections to upstream hosts ahead of the first transfer.
+ *
+ * <p>Warming a host resolves it (via the shared DNS cache) and sends it a
+ * <code>HEAD</code> request, so that the connection (and its TLS session) is
+ * left in the shared pool for the transfer that follows. The status of the
+ * response doesn't matter. Uploads are sent to a host given by the API, so
+ * the host used by the last upload for each API is remembered for warming
+ * the connection for the next one (e.g. for the next module of a build), and
+ * isn't warmed before the first upload of the process.</p>
+ *
+ * <p>Warming (and other background preparation, such as prefetching the
+ * repository details) runs on a few dedicated daemon threads, rather than
+ * the common pool, since it blocks on the network.</p>
+ */
+public final class ConnectionWarmer {
+
+    private static final int MAX_THREADS = 4;
+
+    private static final ConcurrentMap<String, String> UPLOAD_ORIGINS = new ConcurrentHashMap<>();
+    private static final Executor EXECUTOR = createExecutor();
+
+    /**
+     * Get the executor for warming up (and other background preparation).
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Warm up a connection (from the shared pool) to the host of a URL.
+     */
+    public static CompletableFuture<Void> warm(OkHttpClient client, String url) {
+        return CompletableFuture.runAsync(() -> {
+            Request request = new Request.Builder()
+                .url(url)
+                .head()
+                .build();
+
+            /* Any response at all means the connection is open. */
+            try {
+                client.newCall(request).execute().close();
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Warm up a connection (from the API client's pool) to the host of a URL.
+     */
+    public static CompletableFuture<Void> warm(com.squareup.okhttp.OkHttpClient client, String url) {
+        return CompletableFuture.runAsync(() -> {
+            com.squareup.okhttp.Request request = new com.squareup.okhttp.Request.Builder()
+                .url(url)
+                .head()
+                .build();
+
+            /* Any response at all means the connection is open. */
+            try {
+                client.newCall(request).execute().body().close();
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Remember the host that an upload for an API was sent to.
+     */
+    public static void recordUploadUrl(String apiUrl, String uploadUrl) {
+        String origin = getOrigin(uploadUrl);
+        if (origin != null) {
+            UPLOAD_ORIGINS.put(apiUrl, origin);
+        }
+    }
+
+    /**
+     * Get the (scheme, host and port of the) last upload URL for an API, if any.
+     */
+    public static String getUploadOrigin(String apiUrl) {
+        return UPLOAD_ORIGINS.get(apiUrl);
+    }
+
+    // Helpers
+
+    private static Executor createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cloudsmith-warmup-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        /* Only keep threads around while there's something to warm up. */
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static String getOrigin(String url) {
+        try {
+            URI uri = new URI(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return null;
+            }
+
+            return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), "/", null, null).toString();
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+
+    private ConnectionWarmer() {
+        throw new AssertionError("Instantiating utility class.");
+    }
+}
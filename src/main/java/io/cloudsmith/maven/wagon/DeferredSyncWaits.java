@@ -0,0 +1,85 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Process-wide record of the packages with a deferred sync wait.
+ *
+ * <p>Maven connects (and disconnects) a wagon for each module it deploys,
+ * and ignores failures when disconnecting, so the outcome of a package can
+ * only fail the build from a later put. Each package is waited on in the
+ * background from when it's created; each put takes the packages that have
+ * finished since, and the put that creates the next package first waits for
+ * the rest, so that a package synchronises while the next one is
+ * uploaded.</p>
+ */
+public final class DeferredSyncWaits {
+
+    private static final DeferredSyncWaits INSTANCE = new DeferredSyncWaits();
+
+    private final List<CompletableFuture<SyncWaiter.Result>> pending = new ArrayList<>();
+
+    private DeferredSyncWaits() {
+    }
+
+    public static DeferredSyncWaits getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add the (future) outcome of waiting on a package.
+     */
+    public synchronized void add(CompletableFuture<SyncWaiter.Result> result) {
+        this.pending.add(result);
+    }
+
+    /**
+     * Take the outcomes of the packages that have finished waiting.
+     */
+    public synchronized List<SyncWaiter.Result> takeCompleted() {
+        List<SyncWaiter.Result> results = new ArrayList<>();
+        Iterator<CompletableFuture<SyncWaiter.Result>> iterator = this.pending.iterator();
+
+        while (iterator.hasNext()) {
+            CompletableFuture<SyncWaiter.Result> result = iterator.next();
+
+            if (result.isDone()) {
+                results.add(result.join());
+                iterator.remove();
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Wait for (and take) the outcomes of all of the packages being waited on.
+     */
+    public List<SyncWaiter.Result> takeAll() {
+        List<CompletableFuture<SyncWaiter.Result>> remaining;
+
+        synchronized (this) {
+            remaining = new ArrayList<>(this.pending);
+            this.pending.clear();
+        }
+
+        List<SyncWaiter.Result> results = new ArrayList<>();
+
+        for (CompletableFuture<SyncWaiter.Result> result : remaining) {
+            results.add(result.join());
+        }
+
+        return results;
+    }
+
+    /**
+     * Get the number of packages that are still being waited on.
+     */
+    public synchronized int getRemaining() {
+        return this.pending.size();
+    }
+}
@@ -0,0 +1,357 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Local write-ahead journal of a deployment's progress, for resuming it.
+ *
+ * <p>For each package (a repository and groupId/artifactId/version), the
+ * journal records the files uploaded for it (with their checksums and
+ * upstream identifiers) and, once it's been created, the package slug. When
+ * a failed deployment is run again, packages that were already created are
+ * skipped, and files already uploaded for a package that wasn't are attached
+ * without uploading them again. Created packages are only remembered for a
+ * while (to resume a deployment, rather than skip any later one with the
+ * same coordinates), and can be removed (e.g. if deleted upstream).</p>
+ *
+ * <p>The journal is persisted as an append-only tab-separated file, which is
+ * compacted (expired, evicted and superseded entries dropped) when it is
+ * loaded.</p>
+ */
+public final class DeployJournal {
+
+    private static final String FILE_RECORD = "F";
+    private static final String PACKAGE_RECORD = "P";
+    private static final String EVICT_RECORD = "E";
+    private static final String REMOVE_PACKAGE_RECORD = "R";
+
+    private static final ConcurrentMap<Path, DeployJournal> JOURNALS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final Map<String, PackageEntry> packages = new HashMap<>();
+    private boolean loaded = false;
+
+    private DeployJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Get the (shared) journal stored at a path.
+     */
+    public static DeployJournal forPath(Path path) {
+        return JOURNALS.computeIfAbsent(path.toAbsolutePath().normalize(), DeployJournal::new);
+    }
+
+    /**
+     * Look up the slug of a package that was already created.
+     */
+    public synchronized String lookupPackage(String packageKey) throws IOException {
+        load();
+
+        PackageEntry entry = getPackage(packageKey);
+        return entry != null ? entry.getSlug() : null;
+    }
+
+    /**
+     * Check if a (created) package included a file, with the same checksum.
+     */
+    public synchronized boolean hasPackageFile(String packageKey, String filename, String sha256)
+            throws IOException {
+        load();
+
+        PackageEntry entry = getPackage(packageKey);
+        return entry != null && sha256.equals(entry.getFiles().get(filename));
+    }
+
+    /**
+     * Look up the identifier of a file already uploaded for a package.
+     */
+    public synchronized String lookupFile(String packageKey, String filename, String sha256)
+            throws IOException {
+        load();
+
+        String key = getFileKey(packageKey, filename, sha256);
+        FileEntry entry = this.files.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            this.files.remove(key);
+            return null;
+        }
+
+        return entry.getIdentifier();
+    }
+
+    /**
+     * Record a file uploaded for a package.
+     */
+    public synchronized void recordFile(
+            String packageKey, String filename, String sha256, String identifier, long ttlMillis)
+            throws IOException {
+        load();
+
+        FileEntry entry = new FileEntry(
+            packageKey, filename, sha256, identifier, System.currentTimeMillis() + ttlMillis
+        );
+        this.files.put(getFileKey(packageKey, filename, sha256), entry);
+        append(formatFile(entry));
+    }
+
+    /**
+     * Record a created package (which supersedes the files recorded for it).
+     *
+     * @param packageFiles the checksums of the files in the package, by filename
+     */
+    public synchronized void recordPackage(
+            String packageKey, String slug, Map<String, String> packageFiles, long ttlMillis)
+            throws IOException {
+        load();
+
+        PackageEntry entry = new PackageEntry(
+            packageKey, slug, new TreeMap<>(packageFiles), System.currentTimeMillis() + ttlMillis
+        );
+        this.packages.put(packageKey, entry);
+        this.files.values().removeIf(file -> file.getPackageKey().equals(packageKey));
+        append(formatPackage(entry));
+    }
+
+    /**
+     * Evict all files with an identifier (e.g. if upstream rejected it).
+     */
+    public synchronized void evict(String identifier) throws IOException {
+        load();
+
+        if (this.files.values().removeIf(file -> file.getIdentifier().equals(identifier))) {
+            append(EVICT_RECORD + "\t" + identifier + "\n");
+        }
+    }
+
+    /**
+     * Remove a created package (e.g. if it no longer exists upstream).
+     */
+    public synchronized void removePackage(String packageKey) throws IOException {
+        load();
+
+        if (this.packages.remove(packageKey) != null) {
+            append(REMOVE_PACKAGE_RECORD + "\t" + packageKey + "\n");
+        }
+    }
+
+    // Helpers
+
+    private PackageEntry getPackage(String packageKey) {
+        PackageEntry entry = this.packages.get(packageKey);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            this.packages.remove(packageKey);
+            return null;
+        }
+
+        return entry;
+    }
+
+    private void load() throws IOException {
+        if (this.loaded) {
+            return;
+        }
+
+        this.loaded = true;
+
+        if (!Files.exists(this.path)) {
+            return;
+        }
+
+        for (String line : Files.readAllLines(this.path, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t", -1);
+
+            try {
+                if (parts[0].equals(FILE_RECORD) && parts.length == 6) {
+                    FileEntry entry = new FileEntry(parts[1], parts[2], parts[3], parts[4], Long.parseLong(parts[5]));
+                    this.files.put(getFileKey(parts[1], parts[2], parts[3]), entry);
+                } else if (parts[0].equals(PACKAGE_RECORD) && parts.length == 5) {
+                    PackageEntry entry = new PackageEntry(
+                        parts[1], parts[2], parseFiles(parts[3]), Long.parseLong(parts[4])
+                    );
+                    this.packages.put(parts[1], entry);
+                    this.files.values().removeIf(file -> file.getPackageKey().equals(parts[1]));
+                } else if (parts[0].equals(EVICT_RECORD) && parts.length == 2) {
+                    this.files.values().removeIf(file -> file.getIdentifier().equals(parts[1]));
+                } else if (parts[0].equals(REMOVE_PACKAGE_RECORD) && parts.length == 2) {
+                    this.packages.remove(parts[1]);
+                }
+            } catch (NumberFormatException ex) {
+                /* Absorb - skip the corrupt line. */
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        this.files.values().removeIf(file -> file.isExpired(now));
+        this.packages.values().removeIf(entry -> entry.isExpired(now));
+
+        compact();
+    }
+
+    private void compact() throws IOException {
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (PackageEntry entry : this.packages.values()) {
+                writer.write(formatPackage(entry));
+            }
+
+            for (FileEntry entry : this.files.values()) {
+                writer.write(formatFile(entry));
+            }
+        }
+
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void append(String line) throws IOException {
+        Path parent = this.path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(
+                this.path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+        }
+    }
+
+    private static String formatFile(FileEntry entry) {
+        return FILE_RECORD
+            + "\t" + entry.getPackageKey()
+            + "\t" + entry.getFilename()
+            + "\t" + entry.getSha256()
+            + "\t" + entry.getIdentifier()
+            + "\t" + entry.getExpiresAt() + "\n";
+    }
+
+    private static String formatPackage(PackageEntry entry) {
+        List<String> packageFiles = new ArrayList<>();
+        for (Map.Entry<String, String> file : entry.getFiles().entrySet()) {
+            packageFiles.add(file.getKey() + "=" + file.getValue());
+        }
+
+        return PACKAGE_RECORD
+            + "\t" + entry.getPackageKey()
+            + "\t" + entry.getSlug()
+            + "\t" + String.join(",", packageFiles)
+            + "\t" + entry.getExpiresAt() + "\n";
+    }
+
+    private static Map<String, String> parseFiles(String value) {
+        Map<String, String> packageFiles = new TreeMap<>();
+
+        for (String file : value.split(",")) {
+            int k = file.lastIndexOf('=');
+            if (k > 0) {
+                packageFiles.put(file.substring(0, k), file.substring(k + 1));
+            }
+        }
+
+        return packageFiles;
+    }
+
+    private static String getFileKey(String packageKey, String filename, String sha256) {
+        return packageKey + "/" + filename + "/" + sha256;
+    }
+
+    /**
+     * A file uploaded for a package, and the time at which its identifier expires.
+     */
+    private static final class FileEntry {
+        private final String packageKey;
+        private final String filename;
+        private final String sha256;
+        private final String identifier;
+        private final long expiresAt;
+
+        FileEntry(String packageKey, String filename, String sha256, String identifier, long expiresAt) {
+            this.packageKey = packageKey;
+            this.filename = filename;
+            this.sha256 = sha256;
+            this.identifier = identifier;
+            this.expiresAt = expiresAt;
+        }
+
+        String getPackageKey() {
+            return this.packageKey;
+        }
+
+        String getFilename() {
+            return this.filename;
+        }
+
+        String getSha256() {
+            return this.sha256;
+        }
+
+        String getIdentifier() {
+            return this.identifier;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+
+    /**
+     * A created package, the checksums of its files, and the time at which it's forgotten.
+     */
+    private static final class PackageEntry {
+        private final String packageKey;
+        private final String slug;
+        private final Map<String, String> files;
+        private final long expiresAt;
+
+        PackageEntry(String packageKey, String slug, Map<String, String> files, long expiresAt) {
+            this.packageKey = packageKey;
+            this.slug = slug;
+            this.files = files;
+            this.expiresAt = expiresAt;
+        }
+
+        String getPackageKey() {
+            return this.packageKey;
+        }
+
+        String getSlug() {
+            return this.slug;
+        }
+
+        Map<String, String> getFiles() {
+            return this.files;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+}
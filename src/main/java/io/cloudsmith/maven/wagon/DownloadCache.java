@@ -0,0 +1,308 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.binary.Hex;
+
+
+/**
+ * Persistent on-disk cache of files downloaded from the Cloudsmith CDN.
+ *
+ * <p>Entries are keyed by URL and stored as a data file plus a small metadata
+ * file (ETag, last modified time and SHA-1 of the content). All writes go to a
+ * temporary file first and are then atomically renamed into place, so that
+ * the cache can safely be shared by several processes (e.g. build agents on
+ * a shared volume). The cache is kept within a size limit by evicting the
+ * least recently used entries.</p>
+ */
+public final class DownloadCache {
+
+    private static final ConcurrentMap<Path, DownloadCache> CACHES = new ConcurrentHashMap<>();
+
+    private static final String DATA_SUFFIX = ".data";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    private DownloadCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the (shared) cache stored in a directory.
+     */
+    public static DownloadCache forPath(Path directory, long maxBytes) {
+        return CACHES.computeIfAbsent(
+            directory.toAbsolutePath().normalize(), path -> new DownloadCache(path, maxBytes)
+        );
+    }
+
+    /**
+     * Look up the cached entry for a URL, or null if there isn't one.
+     */
+    public Entry lookup(String url) {
+        String key = getKey(url);
+        Path data = this.directory.resolve(key + DATA_SUFFIX);
+        Path meta = this.directory.resolve(key + META_SUFFIX);
+
+        if (!Files.isRegularFile(data) || !Files.isRegularFile(meta)) {
+            return null;
+        }
+
+        Map<String, String> values = new HashMap<>();
+
+        try {
+            for (String line : Files.readAllLines(meta, StandardCharsets.UTF_8)) {
+                int k = line.indexOf('=');
+                if (k > 0) {
+                    values.put(line.substring(0, k), line.substring(k + 1));
+                }
+            }
+
+            /* Touch the entry, so that eviction is least-recently-used. */
+            Files.setLastModifiedTime(data, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            return null;
+        }
+
+        long lastModified = 0;
+
+        try {
+            lastModified = Long.parseLong(values.getOrDefault("last_modified", "0"));
+        } catch (NumberFormatException ex) {
+            /* Absorb - unknown. */
+        }
+
+        return new Entry(key, data, values.get("etag"), values.get("sha1"), lastModified);
+    }
+
+    /**
+     * Store the content for a URL in the cache, replacing any existing entry.
+     */
+    public Entry store(String url, InputStream content, String etag, long lastModified)
+            throws IOException {
+        Files.createDirectories(this.directory);
+
+        String key = getKey(url);
+        Path data = this.directory.resolve(key + DATA_SUFFIX);
+        Path meta = this.directory.resolve(key + META_SUFFIX);
+        Path dataTemp = getTempPath(key + DATA_SUFFIX);
+        Path metaTemp = getTempPath(key + META_SUFFIX);
+
+        MessageDigest digest = getSha1Digest();
+
+        try {
+            try (OutputStream output = Files.newOutputStream(dataTemp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read = content.read(buffer);
+                while (read >= 0) {
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    read = content.read(buffer);
+                }
+            }
+
+            String sha1 = Hex.encodeHexString(digest.digest());
+
+            try (BufferedWriter writer = Files.newBufferedWriter(metaTemp, StandardCharsets.UTF_8)) {
+                if (etag != null) {
+                    writer.write("etag=" + etag + "\n");
+                }
+                writer.write("sha1=" + sha1 + "\n");
+                writer.write("last_modified=" + lastModified + "\n");
+            }
+
+            Files.move(dataTemp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(metaTemp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            try {
+                evict(data);
+            } catch (IOException ex) {
+                /* Absorb - eviction is best effort (another process may be evicting too). */
+            }
+
+            return new Entry(key, data, etag, sha1, lastModified);
+        } finally {
+            Files.deleteIfExists(dataTemp);
+            Files.deleteIfExists(metaTemp);
+        }
+    }
+
+    /**
+     * Copy a cached entry to a destination, verifying its checksum on the way.
+     *
+     * @return false if the entry was missing or corrupt (and has been removed)
+     */
+    public boolean copyTo(Entry entry, File destination) throws IOException {
+        Path temp = destination.toPath().resolveSibling(destination.getName() + TEMP_SUFFIX);
+        MessageDigest digest = getSha1Digest();
+
+        try {
+            try (InputStream input = Files.newInputStream(entry.getPath());
+                 OutputStream output = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read = input.read(buffer);
+                while (read >= 0) {
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    read = input.read(buffer);
+                }
+            } catch (NoSuchFileException ex) {
+                /* Evicted in the meantime. */
+                return false;
+            }
+
+            if (entry.getSha1() != null && !entry.getSha1().equals(Hex.encodeHexString(digest.digest()))) {
+                remove(entry);
+                return false;
+            }
+
+            Files.move(temp, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (entry.getLastModified() > 0) {
+            destination.setLastModified(entry.getLastModified());
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove an entry from the cache.
+     */
+    public void remove(Entry entry) throws IOException {
+        Files.deleteIfExists(this.directory.resolve(entry.getKey() + META_SUFFIX));
+        Files.deleteIfExists(entry.getPath());
+    }
+
+    // Helpers
+
+    /**
+     * Evict least recently used entries until the cache is within its size limit.
+     */
+    private synchronized void evict(Path keep) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> accessed = new HashMap<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + DATA_SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    sizes.put(path, Files.size(path));
+                    accessed.put(path, Files.getLastModifiedTime(path).toMillis());
+                    entries.add(path);
+                    total += sizes.get(path);
+                } catch (NoSuchFileException ex) {
+                    /* Absorb - removed by another process. */
+                }
+            }
+        }
+
+        if (total <= this.maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(accessed::get));
+
+        for (Path path : entries) {
+            if (total <= this.maxBytes) {
+                break;
+            }
+
+            if (path.equals(keep)) {
+                continue;
+            }
+
+            long size = sizes.get(path);
+            String name = path.getFileName().toString();
+            String key = name.substring(0, name.length() - DATA_SUFFIX.length());
+            Files.deleteIfExists(this.directory.resolve(key + META_SUFFIX));
+            Files.deleteIfExists(path);
+            total -= size;
+        }
+    }
+
+    private Path getTempPath(String name) {
+        return this.directory.resolve(name + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    private static String getKey(String url) {
+        return Hex.encodeHexString(getSha1Digest().digest(url.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest getSha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * A cached file, with the validators needed to revalidate it upstream.
+     */
+    public static final class Entry {
+        private final String key;
+        private final Path path;
+        private final String etag;
+        private final String sha1;
+        private final long lastModified;
+
+        Entry(String key, Path path, String etag, String sha1, long lastModified) {
+            this.key = key;
+            this.path = path;
+            this.etag = etag;
+            this.sha1 = sha1;
+            this.lastModified = lastModified;
+        }
+
+        String getKey() {
+            return this.key;
+        }
+
+        public Path getPath() {
+            return this.path;
+        }
+
+        public String getEtag() {
+            return this.etag;
+        }
+
+        public String getSha1() {
+            return this.sha1;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+
+/**
+ * A request body that streams a local file, reporting progress as it goes.
+ *
+ * <p>The file is read from a {@link FileChannel} into a large buffer (sized
+ * to the file, and allocated for each time the body is written), and
+ * progress is reported once per buffer, which keeps the number of progress
+ * notifications for a large file reasonable. If given a digest and its
+ * expected value, the bytes are also digested as they're sent, and the
+ * upload is aborted if the file doesn't match (e.g. because it was modified
+ * after it was checksummed).</p>
+ *
+ * <p>The file can't be sent with {@link FileChannel#transferTo} (zero-copy),
+ * since it's one part of a multipart body, and every byte has to pass
+ * through the digest anyway.</p>
+ */
+public class FileRequestBody extends RequestBody {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /* When throttled, send in small slices so the connection never goes quiet for long. */
+    private static final int THROTTLE_SLICE_SIZE = 16 * 1024;
+
+    private final MediaType contentType;
+    private final File file;
+    private final ProgressListener listener;
+    private final AtomicLong progress;
+    private final MessageDigest digest;
+    private final String expectedDigest;
+
+    /**
+     * Thrown if the file doesn't match its expected digest (so sending it again won't help).
+     */
+    public static class FileChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public FileChangedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Notified as the file is sent.
+     */
+    public interface ProgressListener {
+        void onProgress(byte[] buffer, int length);
+    }
+
+    /**
+     * @param listener notified with each buffer sent (may be null)
+     * @param progress the bytes reported so far, shared by every attempt to send the file, so
+     *     that resending it (e.g. on a retry) isn't reported again
+     * @param digest digest to verify the file with as it's sent (may be null)
+     * @param expectedDigest the expected (hex) value of the digest
+     */
+    public FileRequestBody(
+            MediaType contentType, File file, ProgressListener listener, AtomicLong progress,
+            MessageDigest digest, String expectedDigest) {
+        this.contentType = contentType;
+        this.file = file;
+        this.listener = listener;
+        this.progress = progress;
+        this.digest = digest;
+        this.expectedDigest = expectedDigest;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return this.file.length();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        byte[] bytes = new byte[(int) Math.max(1, Math.min(BUFFER_SIZE, this.file.length()))];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = 0;
+
+        BandwidthThrottle throttle = BandwidthThrottle.getShared();
+
+        if (this.digest != null) {
+            /* The body is written again if the request is retried. */
+            this.digest.reset();
+        }
+
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            int read = channel.read(buffer);
+            while (read >= 0) {
+                if (read > 0 && !buffer.hasRemaining()) {
+                    flushBuffer(sink, bytes, buffer.position(), position, throttle);
+                    position += buffer.position();
+                    buffer.clear();
+                }
+
+                read = channel.read(buffer);
+            }
+
+            if (buffer.position() > 0) {
+                flushBuffer(sink, bytes, buffer.position(), position, throttle);
+            }
+        }
+
+        if (this.digest != null && this.expectedDigest != null) {
+            String actual = Hex.encodeHexString(this.digest.digest());
+            if (!actual.equalsIgnoreCase(this.expectedDigest)) {
+                throw new FileChangedException(
+                    "File changed during upload (checksum mismatch): " + this.file.getName()
+                );
+            }
+        }
+    }
+
+    // Helpers
+
+    /**
+     * Report the bytes sent that haven't been reported yet.
+     */
+    private void reportProgress(byte[] bytes, int length, long position) {
+        long end = position + length;
+        long reported = this.progress.getAndAccumulate(end, Math::max);
+        if (end <= reported) {
+            return;
+        }
+
+        int skip = (int) Math.max(0, reported - position);
+        if (skip == 0) {
+            this.listener.onProgress(bytes, length);
+        } else {
+            this.listener.onProgress(Arrays.copyOfRange(bytes, skip, length), length - skip);
+        }
+    }
+
+    private void flushBuffer(BufferedSink sink, byte[] bytes, int length, long position, BandwidthThrottle throttle)
+            throws IOException {
+        if (throttle == null) {
+            sink.write(bytes, 0, length);
+        } else {
+            for (int offset = 0; offset < length; offset += THROTTLE_SLICE_SIZE) {
+                int sliceLength = Math.min(THROTTLE_SLICE_SIZE, length - offset);
+                throttle.acquire(sliceLength);
+                sink.write(bytes, offset, sliceLength);
+                sink.flush();
+            }
+        }
+
+        if (this.digest != null) {
+            this.digest.update(bytes, 0, length);
+        }
+
+        if (this.listener != null) {
+            reportProgress(bytes, length, position);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.cloudsmith.api.ApiClient;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+
+/**
+ * Process-wide HTTP clients shared by all wagon instances.
+ *
+ * <p>Uploads and CDN downloads share a single OkHttp client (and therefore a
+ * single connection pool and dispatcher), so that connections and TLS sessions
+ * are reused across artifacts, modules and wagon instances. The generated
+ * Cloudsmith API client is built on OkHttp 2, so it can't share the same
+ * instance, but it is configured with an equivalent pool and the same DNS
+ * cache, and its calls are scheduled within the API's rate limits.</p>
+ */
+public final class HttpClients {
+
+    private static OkHttpClient sharedClient = null;
+    private static CachingDns sharedDns = null;
+    private static com.squareup.okhttp.ConnectionPool sharedApiPool = null;
+
+    /**
+     * Get the shared HTTP client for uploads and downloads.
+     */
+    public static synchronized OkHttpClient getSharedClient() {
+        if (sharedClient == null) {
+            ConnectionPool pool = new ConnectionPool(
+                Properties.getHttpMaxIdle(),
+                Properties.getHttpKeepAlive(),
+                TimeUnit.SECONDS
+            );
+
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dns(getSharedDns())
+                .addInterceptor(TransferTimeouts.getInstance())
+                .connectTimeout(Properties.getHttpConnectTimeout(), TimeUnit.SECONDS)
+                .readTimeout(Properties.getHttpReadTimeout(), TimeUnit.SECONDS)
+                .writeTimeout(Properties.getHttpWriteTimeout(), TimeUnit.SECONDS);
+
+            if (Properties.isHttp2Enabled()) {
+                builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+            } else {
+                builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+            }
+
+            sharedClient = builder.build();
+        }
+
+        return sharedClient;
+    }
+
+    /**
+     * Configure a Cloudsmith API client to use the shared pool and DNS cache.
+     */
+    public static synchronized void configureApiClient(ApiClient client) {
+        if (sharedApiPool == null) {
+            sharedApiPool = new com.squareup.okhttp.ConnectionPool(
+                Properties.getHttpMaxIdle(),
+                Properties.getHttpKeepAlive(),
+                TimeUnit.SECONDS
+            );
+        }
+
+        final CachingDns dns = getSharedDns();
+        com.squareup.okhttp.OkHttpClient httpClient = client.getHttpClient();
+        httpClient.setConnectionPool(sharedApiPool);
+        httpClient.setDns(hostname -> dns.lookup(hostname));
+
+        /* The API client may be shared (and so configured more than once). */
+        if (!httpClient.interceptors().contains(ApiRateLimiter.getInstance())) {
+            httpClient.interceptors().add(ApiRateLimiter.getInstance());
+        }
+
+        if (Properties.isHttp2Enabled()) {
+            httpClient.setProtocols(Arrays.asList(
+                com.squareup.okhttp.Protocol.HTTP_2,
+                com.squareup.okhttp.Protocol.HTTP_1_1
+            ));
+        } else {
+            httpClient.setProtocols(Collections.singletonList(
+                com.squareup.okhttp.Protocol.HTTP_1_1
+            ));
+        }
+    }
+
+    /**
+     * Get the shared DNS cache.
+     */
+    private static synchronized CachingDns getSharedDns() {
+        if (sharedDns == null) {
+            sharedDns = new CachingDns(Properties.getHttpDnsTtl());
+        }
+
+        return sharedDns;
+    }
+
+    private HttpClients() {
+        throw new AssertionError("Instantiating utility class.");
+    }
+}
@@ -0,0 +1,190 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.cloudsmith.api.ApiException;
+import io.cloudsmith.api.models.Repository;
+
+
+/**
+ * Process-wide cache of upstream repository metadata.
+ *
+ * <p>The CDN URL of a repository (from its details) rarely changes, so it is
+ * cached for a TTL across all wagon instances, rather than fetched by every
+ * wagon created by a multi-module build or a long-lived Maven daemon. CDN
+ * URLs can optionally be persisted to disk as well, so that they survive
+ * between builds.</p>
+ */
+public final class MetadataCache {
+
+    private static final MetadataCache INSTANCE = new MetadataCache();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+    private Path loadedPath = null;
+
+    private MetadataCache() {
+    }
+
+    public static MetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A call that fetches the repository details from upstream.
+     */
+    public interface Loader {
+        Repository load() throws ApiException;
+    }
+
+    /**
+     * Get the CDN URL for a repository, fetching its details if not cached.
+     */
+    public String getCdnUrl(CloudsmithRepository repository, Loader loader) throws ApiException {
+        String key = getKey(repository);
+        long ttlMillis = Properties.getMetadataTtl() * 1000L;
+
+        Entry entry = getEntry(key);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+            return entry.getCdnUrl();
+        }
+
+        /* Only fetch once, even if several wagons (or threads) ask at once. */
+        synchronized (this.locks.computeIfAbsent(key, k -> new Object())) {
+            entry = this.entries.get(key);
+            if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+                return entry.getCdnUrl();
+            }
+
+            Repository upstream = loader.load();
+            entry = new Entry(upstream.getCdnUrl(), System.currentTimeMillis() + ttlMillis);
+
+            if (ttlMillis > 0 && entry.getCdnUrl() != null) {
+                this.entries.put(key, entry);
+                persist();
+            }
+
+            return entry.getCdnUrl();
+        }
+    }
+
+    // Helpers
+
+    private Entry getEntry(String key) {
+        load();
+        return this.entries.get(key);
+    }
+
+    private synchronized void load() {
+        if (!Properties.isMetadataPersistEnabled()) {
+            return;
+        }
+
+        Path path = getPath();
+        if (path.equals(this.loadedPath)) {
+            return;
+        }
+
+        this.loadedPath = path;
+
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    continue;
+                }
+
+                Entry entry = new Entry(parts[1], Long.parseLong(parts[2]));
+                if (!entry.isExpired(now)) {
+                    this.entries.putIfAbsent(parts[0], entry);
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            System.out.println("[WARN] Could not read metadata cache: " + ex.getMessage());
+        }
+    }
+
+    private synchronized void persist() {
+        if (!Properties.isMetadataPersistEnabled()) {
+            return;
+        }
+
+        Path path = getPath();
+        Path temp = path.resolveSibling(path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+                    writer.write(
+                        item.getKey() + "\t" + item.getValue().getCdnUrl()
+                        + "\t" + item.getValue().getExpiresAt() + "\n"
+                    );
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.out.println("[WARN] Could not write metadata cache: " + ex.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ex) {
+                /* Absorb - leave it behind. */
+            }
+        }
+    }
+
+    private static Path getPath() {
+        return Paths.get(Properties.getMetadataPath()).toAbsolutePath().normalize();
+    }
+
+    private static String getKey(CloudsmithRepository repository) {
+        return repository.getApiUrl() + "|" + repository.getOwnerName() + "|" + repository.getRepositoryName();
+    }
+
+    /**
+     * The cached CDN URL for a repository, and the time at which it expires.
+     */
+    private static final class Entry {
+        private final String cdnUrl;
+        private final long expiresAt;
+
+        Entry(String cdnUrl, long expiresAt) {
+            this.cdnUrl = cdnUrl;
+            this.expiresAt = expiresAt;
+        }
+
+        String getCdnUrl() {
+            return this.cdnUrl;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+}
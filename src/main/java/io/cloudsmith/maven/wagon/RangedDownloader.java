@@ -0,0 +1,295 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+
+/**
+ * Downloads a large file as several byte ranges, concurrently.
+ *
+ * <p>A HEAD request determines the size of the file (and whether the server
+ * supports ranges), then the file is fetched in fixed-size chunks by a pool
+ * of threads, each writing its chunk directly into its position in a
+ * preallocated file. The chunks are fetched over separate HTTP/1.1
+ * connections, since multiplexing them over a single HTTP/2 connection
+ * would defeat the purpose of using more than one TCP stream.</p>
+ *
+ * <p>Only files that are likely to be large (i.e. archives, by extension) are
+ * probed, so that resolving POMs, checksums and metadata doesn't cost an
+ * extra round trip each. Hosts found not to support ranges aren't probed
+ * again.</p>
+ */
+public class RangedDownloader {
+
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> LARGE_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "aar", "bz2", "ear", "gz", "jar", "nar", "rar", "tar", "tgz", "war", "xz", "zip"
+    ));
+    private static final Set<String> UNRANGEABLE_HOSTS = ConcurrentHashMap.newKeySet();
+
+    private final OkHttpClient client;
+    private final RetryPolicy retryPolicy;
+    private final int threads;
+    private final long chunkSize;
+
+    public RangedDownloader(OkHttpClient client, RetryPolicy retryPolicy, int threads, long chunkSize) {
+        this.client = client.newBuilder()
+            .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+            .build();
+        this.retryPolicy = retryPolicy;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Thrown if the server ignores range requests (so a single stream must be used).
+     */
+    public static class RangeNotSupportedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RangeNotSupportedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Check if a file is worth probing, i.e. is likely to be large, on a host that may support ranges.
+     */
+    public static boolean isCandidate(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null || UNRANGEABLE_HOSTS.contains(httpUrl.host())) {
+            return false;
+        }
+
+        List<String> segments = httpUrl.pathSegments();
+        String filename = segments.get(segments.size() - 1);
+        int k = filename.lastIndexOf('.');
+        return k > 0 && LARGE_EXTENSIONS.contains(filename.substring(k + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Probe a file with a HEAD request.
+     *
+     * @return the details of the file, or null if it couldn't be probed
+     */
+    public Probe probe(String url) throws IOException {
+        Request request = new Request.Builder().url(url).head().build();
+
+        try (Response response = this.retryPolicy.callHttp(this.client, request)) {
+            if (!response.isSuccessful()) {
+                return null;
+            }
+
+            long size = -1;
+            String contentLength = response.header("Content-Length");
+
+            if (contentLength != null) {
+                try {
+                    size = Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException ex) {
+                    /* Absorb - unknown size. */
+                }
+            }
+
+            Date lastModified = response.headers().getDate("Last-Modified");
+            boolean rangeable = "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+
+            if (!rangeable) {
+                UNRANGEABLE_HOSTS.add(request.url().host());
+            }
+
+            return new Probe(
+                size,
+                rangeable,
+                response.header("ETag"),
+                lastModified != null ? lastModified.getTime() : 0
+            );
+        }
+    }
+
+    /**
+     * Download a (probed) file to a destination, in concurrent ranges.
+     *
+     * <p>The file is written to a temporary file next to the destination,
+     * which replaces the destination only once every range has completed.</p>
+     */
+    public void download(String url, Probe probe, File destination) throws IOException {
+        File temp = new File(destination.getPath() + ".part");
+        long size = probe.getSize();
+        int chunks = (int) ((size + this.chunkSize - 1) / this.chunkSize);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(this.threads, chunks)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cloudsmith-download-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        boolean success = false;
+
+        try (FileChannel channel = FileChannel.open(
+                temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            /* Preallocate, so that ranges can be written in any order. */
+            if (size > 0) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for (int i = 0; i < chunks; i++) {
+                long start = i * this.chunkSize;
+                long end = Math.min(size, start + this.chunkSize) - 1;
+                futures.add(executor.submit(() -> {
+                    fetchRange(url, probe, channel, start, end);
+                    return null;
+                }));
+            }
+
+            awaitAll(futures);
+            channel.force(false);
+            success = true;
+        } finally {
+            executor.shutdownNow();
+
+            if (!success) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+
+        Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Helpers
+
+    private void fetchRange(String url, Probe probe, FileChannel channel, long start, long end)
+            throws IOException {
+        Request.Builder builder = new Request.Builder()
+            .url(url)
+            .header("Range", "bytes=" + start + "-" + end);
+
+        if (probe.getEtag() != null && !probe.getEtag().startsWith("W/")) {
+            /* Make sure every range comes from the same version of the file. */
+            builder.header("If-Range", probe.getEtag());
+        }
+
+        try (Response response = this.retryPolicy.callHttp(this.client, builder.build())) {
+            if (response.code() != HTTP_PARTIAL_CONTENT) {
+                if (response.isSuccessful()) {
+                    UNRANGEABLE_HOSTS.add(response.request().url().host());
+                    throw new RangeNotSupportedException("Server ignored range request for " + url);
+                }
+
+                throw new IOException("Unexpected response (" + response.code() + ") for range of " + url);
+            }
+
+            String contentRange = response.header("Content-Range");
+            if (contentRange != null && !contentRange.startsWith("bytes " + start + "-" + end + "/")) {
+                throw new IOException("Unexpected range (" + contentRange + ") for " + url);
+            }
+
+            long position = start;
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            try (InputStream input = response.body().byteStream()) {
+                int read = input.read(bytes);
+                while (read >= 0) {
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+
+                    read = input.read(bytes);
+                }
+            }
+
+            if (position != end + 1) {
+                throw new IOException(
+                    "Incomplete range (" + (position - start) + " of " + (end - start + 1) + " bytes) for " + url
+                );
+            }
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws IOException {
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted downloading ranges", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * The details of a file, from a HEAD request.
+     */
+    public static class Probe {
+        private final long size;
+        private final boolean rangeable;
+        private final String etag;
+        private final long lastModified;
+
+        public Probe(long size, boolean rangeable, String etag, long lastModified) {
+            this.size = size;
+            this.rangeable = rangeable;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public boolean isRangeable() {
+            return this.rangeable && this.size > 0;
+        }
+
+        public String getEtag() {
+            return this.etag;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+    }
+}
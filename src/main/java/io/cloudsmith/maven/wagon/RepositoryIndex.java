@@ -0,0 +1,286 @@
+package io.cloudsmith.maven.wagon;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.cloudsmith.api.ApiException;
+import io.cloudsmith.api.models.ModelPackage;
+import io.cloudsmith.api.models.PackageFile;
+
+
+/**
+ * Process-wide index of the files in upstream repositories.
+ *
+ * <p>Listings of the files in a repository are built from the (paginated)
+ * packages API and cached for a TTL, so that directory listings, and
+ * existence checks for files that were listed, don't need to download
+ * anything. Files found to be missing (i.e. a 404 from the CDN) are cached
+ * for a (shorter) TTL as well, so that resolving the same missing file from
+ * several modules or repositories fails fast.</p>
+ */
+public final class RepositoryIndex {
+
+    private static final RepositoryIndex INSTANCE = new RepositoryIndex();
+    private static final String FORMAT_QUERY = "format:maven";
+    private static final int PAGE_SIZE = 100;
+
+    private final ConcurrentMap<String, Listing> listings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> missing = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    private RepositoryIndex() {
+    }
+
+    public static RepositoryIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A call that fetches a page of packages from upstream.
+     */
+    public interface Loader {
+        List<ModelPackage> load(String query, int page, int pageSize) throws ApiException;
+    }
+
+    /**
+     * List the files and subdirectories (with a trailing slash) in a directory.
+     *
+     * <p>The packages are first listed by the artifactId the directory might
+     * belong to (for an artifact or version directory), and only if that
+     * doesn't find the directory, e.g. for a group directory, is the whole
+     * repository listed.</p>
+     *
+     * @param cdnUrl the base (Maven) CDN URL of the repository, which the file paths are relative to
+     * @return the entries in the directory, or null if it doesn't exist
+     */
+    public List<String> list(CloudsmithRepository repository, String cdnUrl, String directory, Loader loader)
+            throws ApiException {
+        String path = normalise(directory);
+        String[] segments = path.isEmpty() ? new String[0] : path.split("/");
+
+        if (segments.length >= 2) {
+            String query = FORMAT_QUERY
+                + " AND (name:" + segments[segments.length - 1]
+                + " OR name:" + segments[segments.length - 2] + ")";
+            List<String> entries = getListing(repository, cdnUrl, query, loader).getEntries(path);
+            if (entries != null) {
+                return entries;
+            }
+        }
+
+        return getListing(repository, cdnUrl, FORMAT_QUERY, loader).getEntries(path);
+    }
+
+    /**
+     * Check if a file is in a (cached, unexpired) listing of a repository.
+     */
+    public boolean isListed(CloudsmithRepository repository, String path) {
+        String repositoryKey = getKey(repository);
+        String filePath = normalise(path);
+        long now = System.currentTimeMillis();
+
+        for (Listing listing : this.listings.values()) {
+            if (listing.getRepositoryKey().equals(repositoryKey)
+                    && !listing.isExpired(now)
+                    && listing.contains(filePath)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if a file was recently found to be missing from a repository.
+     */
+    public boolean isMissing(CloudsmithRepository repository, String path) {
+        String key = getKey(repository) + "|" + normalise(path);
+        Long expiresAt = this.missing.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() >= expiresAt) {
+            this.missing.remove(key, expiresAt);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Record that a file is missing from a repository.
+     */
+    public void recordMissing(CloudsmithRepository repository, String path) {
+        long ttlMillis = Properties.getIndexMissingTtl() * 1000L;
+        if (ttlMillis > 0) {
+            this.missing.put(getKey(repository) + "|" + normalise(path), System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    /**
+     * Forget what is known about a repository's files (e.g. after uploading to it).
+     */
+    public void invalidate(CloudsmithRepository repository, String path) {
+        String repositoryKey = getKey(repository);
+        this.missing.remove(repositoryKey + "|" + normalise(path));
+        this.listings.values().removeIf(listing -> listing.getRepositoryKey().equals(repositoryKey));
+    }
+
+    // Helpers
+
+    private Listing getListing(CloudsmithRepository repository, String cdnUrl, String query, Loader loader)
+            throws ApiException {
+        String repositoryKey = getKey(repository);
+        String key = repositoryKey + "|" + query;
+
+        Listing listing = this.listings.get(key);
+        if (listing != null && !listing.isExpired(System.currentTimeMillis())) {
+            return listing;
+        }
+
+        /* Only fetch once, even if several wagons (or threads) ask at once. */
+        synchronized (this.locks.computeIfAbsent(key, k -> new Object())) {
+            listing = this.listings.get(key);
+            if (listing != null && !listing.isExpired(System.currentTimeMillis())) {
+                return listing;
+            }
+
+            String basePath = getUrlPath(cdnUrl) + "/";
+            Set<String> paths = new HashSet<>();
+
+            int page = 1;
+            List<ModelPackage> packages;
+
+            do {
+                packages = loader.load(query, page++, PAGE_SIZE);
+                if (packages == null) {
+                    break;
+                }
+
+                for (ModelPackage modelPackage : packages) {
+                    addPaths(paths, basePath, modelPackage);
+                }
+            } while (packages.size() == PAGE_SIZE);
+
+            long ttlMillis = Properties.getIndexTtl() * 1000L;
+            listing = new Listing(repositoryKey, paths, System.currentTimeMillis() + ttlMillis);
+
+            if (ttlMillis > 0) {
+                this.listings.put(key, listing);
+            }
+
+            return listing;
+        }
+    }
+
+    /**
+     * Add the paths (relative to the CDN URL) of a package's files.
+     */
+    private static void addPaths(Set<String> paths, String basePath, ModelPackage modelPackage) {
+        if (modelPackage.getFiles() == null) {
+            return;
+        }
+
+        for (PackageFile file : modelPackage.getFiles()) {
+            if (file.getCdnUrl() == null) {
+                continue;
+            }
+
+            /* Compare paths only, in case the files are served from another host. */
+            String filePath = getUrlPath(file.getCdnUrl());
+            if (filePath.startsWith(basePath)) {
+                paths.add(normalise(filePath.substring(basePath.length())));
+            }
+        }
+    }
+
+    private static String getUrlPath(String url) {
+        try {
+            String path = new URI(url).getPath();
+            return path != null ? normalise(path) : "";
+        } catch (URISyntaxException ex) {
+            return "";
+        }
+    }
+
+    private static String normalise(String path) {
+        String normalised = path.replace('\\', '/');
+
+        int start = 0;
+        int end = normalised.length();
+
+        while (start < end && normalised.charAt(start) == '/') {
+            start++;
+        }
+
+        while (end > start && normalised.charAt(end - 1) == '/') {
+            end--;
+        }
+
+        return normalised.substring(start, end);
+    }
+
+    private static String getKey(CloudsmithRepository repository) {
+        return repository.getApiUrl() + "|" + repository.getOwnerName() + "|" + repository.getRepositoryName();
+    }
+
+    /**
+     * The paths of the files in (part of) a repository, and the time at which they expire.
+     */
+    private static final class Listing {
+        private final String repositoryKey;
+        private final Set<String> paths;
+        private final long expiresAt;
+
+        Listing(String repositoryKey, Set<String> paths, long expiresAt) {
+            this.repositoryKey = repositoryKey;
+            this.paths = paths;
+            this.expiresAt = expiresAt;
+        }
+
+        String getRepositoryKey() {
+            return this.repositoryKey;
+        }
+
+        boolean contains(String path) {
+            return this.paths.contains(path);
+        }
+
+        /**
+         * Get the entries in a directory, or null if there are none.
+         */
+        List<String> getEntries(String directory) {
+            String prefix = directory.isEmpty() ? "" : directory + "/";
+            Set<String> entries = new TreeSet<>();
+
+            for (String path : this.paths) {
+                if (!path.startsWith(prefix)) {
+                    continue;
+                }
+
+                String rest = path.substring(prefix.length());
+                int k = rest.indexOf('/');
+                entries.add(k >= 0 ? rest.substring(0, k + 1) : rest);
+            }
+
+            if (entries.isEmpty()) {
+                return null;
+            }
+
+            return Collections.unmodifiableList(new ArrayList<>(entries));
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cloudsmith.api.ApiException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.internal.http2.StreamResetException;
+
+
+/**
+ * Retries transient failures of calls to the Cloudsmith API, S3 and the CDN.
+ *
+ * <p>Connection failures, timeouts and responses such as 429 (rate limited)
+ * and 502/503/504 (upstream unavailable) are retried with exponential backoff
+ * and full jitter, honouring any {@code Retry-After} header. Retries are
+ * limited per call (max attempts) and per policy (a budget shared by all
+ * calls), and each host has a {@link CircuitBreaker} so that a host that is
+ * down fails fast rather than being retried by every call.</p>
+ */
+public class RetryPolicy {
+
+    private static final long MAX_RETRY_AFTER_MILLIS = 300_000;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final AtomicInteger budget;
+    private final TransferMetrics metrics;
+
+    /**
+     * A call to the Cloudsmith API.
+     */
+    public interface ApiCall<T> {
+        T call() throws ApiException;
+    }
+
+    /**
+     * Notified around each attempt to send an HTTP request.
+     */
+    public interface AttemptListener {
+        /**
+         * Called before each attempt (e.g. to wait until it's allowed).
+         */
+        void beforeAttempt() throws IOException;
+
+        /**
+         * Called after each attempt, before backing off to retry it.
+         *
+         * @param code the response code, or -1 if there was no response
+         * @param failure why there was no response (may be null)
+         */
+        void afterAttempt(int code, IOException failure);
+    }
+
+    /**
+     * @param metrics where to record retries (may be null)
+     */
+    public RetryPolicy(
+            int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, int budget,
+            TransferMetrics metrics) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoffMillis);
+        this.budget = new AtomicInteger(budget);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Create a retry policy from the runtime properties.
+     */
+    public static RetryPolicy fromProperties(TransferMetrics metrics) {
+        return new RetryPolicy(
+            Properties.getRetryMaxAttempts(),
+            Properties.getRetryBackoff(),
+            Properties.getRetryMaxBackoff(),
+            Properties.getRetryBudget(),
+            metrics
+        );
+    }
+
+    /**
+     * Call the Cloudsmith API (on a host), retrying transient failures.
+     */
+    public <T> T callApi(String host, String description, ApiCall<T> call) throws ApiException {
+        return callApi(host, description, call, true);
+    }
+
+    /**
+     * Call the Cloudsmith API (on a host), retrying transient failures.
+     *
+     * <p>If the call isn't idempotent (e.g. it creates something), it's only
+     * retried if it can't have been processed, i.e. it was rate limited or
+     * couldn't connect, since otherwise a retry could repeat it.</p>
+     */
+    public <T> T callApi(String host, String description, ApiCall<T> call, boolean idempotent) throws ApiException {
+        CircuitBreaker breaker = CircuitBreaker.forHost(host);
+
+        for (int attempt = 1;; attempt++) {
+            if (!breaker.allowRequest()) {
+                recordCircuitRejection();
+                throw new ApiException("Circuit breaker is open for " + host + ", not calling: " + description);
+            }
+
+            try {
+                T result = call.call();
+                breaker.recordSuccess();
+                return result;
+            } catch (ApiException ex) {
+                if (!isRetryable(ex)) {
+                    /* The host responded, so it's healthy. */
+                    breaker.recordSuccess();
+                    throw ex;
+                }
+
+                breaker.recordFailure();
+
+                if ((!idempotent && !isUnprocessed(ex)) || !canRetry(attempt, this.maxAttempts)) {
+                    throw ex;
+                }
+
+                long delay = getDelayMillis(attempt, getRetryAfterMillis(ex.getResponseHeaders()));
+                logRetry(description, attempt, this.maxAttempts, delay, describe(ex));
+
+                if (!sleep(delay)) {
+                    throw ex;
+                }
+            } catch (RuntimeException ex) {
+                /* E.g. the response couldn't be parsed, so don't trust the host yet. */
+                breaker.recordFailure();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Execute an HTTP request, retrying transient failures.
+     *
+     * <p>Returns the final response, which may be unsuccessful (if it wasn't
+     * retryable, or retries were exhausted); the caller must close it.</p>
+     */
+    public Response callHttp(OkHttpClient client, Request request) throws IOException {
+        return callHttp(client, request, this.maxAttempts);
+    }
+
+    /**
+     * Execute an HTTP request, retrying transient failures (up to a number of attempts).
+     *
+     * <p>Returns the final response, which may be unsuccessful (if it wasn't
+     * retryable, or retries were exhausted); the caller must close it.</p>
+     */
+    public Response callHttp(OkHttpClient client, Request request, int maxAttempts) throws IOException {
+        return callHttp(client, request, maxAttempts, null);
+    }
+
+    /**
+     * Execute an HTTP request, retrying transient failures (up to a number of attempts).
+     *
+     * <p>Returns the final response, which may be unsuccessful (if it wasn't
+     * retryable, or retries were exhausted); the caller must close it.</p>
+     *
+     * @param listener notified around each attempt (may be null)
+     */
+    public Response callHttp(
+            OkHttpClient client, Request request, int maxAttempts, AttemptListener listener) throws IOException {
+        String host = request.url().host();
+        String description = request.method() + " " + request.url().encodedPath();
+        CircuitBreaker breaker = CircuitBreaker.forHost(host);
+
+        for (int attempt = 1;; attempt++) {
+            if (!breaker.allowRequest()) {
+                recordCircuitRejection();
+                throw new IOException("Circuit breaker is open for " + host + ", not calling: " + description);
+            }
+
+            Response response;
+
+            if (listener != null) {
+                listener.beforeAttempt();
+            }
+
+            try {
+                response = client.newCall(request).execute();
+            } catch (IOException ex) {
+                notifyAttempt(listener, -1, ex);
+
+                if (!isRetryable(ex)) {
+                    breaker.recordAbandoned();
+                    throw ex;
+                }
+
+                breaker.recordFailure();
+
+                if (!canRetry(attempt, maxAttempts)) {
+                    throw ex;
+                }
+
+                long delay = getDelayMillis(attempt, -1);
+                logRetry(description, attempt, maxAttempts, delay, ex.toString());
+
+                if (!sleep(delay)) {
+                    throw new InterruptedIOException("Interrupted retrying: " + description);
+                }
+
+                continue;
+            } catch (RuntimeException ex) {
+                notifyAttempt(listener, -1, null);
+                breaker.recordFailure();
+                throw ex;
+            }
+
+            notifyAttempt(listener, response.code(), null);
+
+            if (!isRetryableStatus(response.code())) {
+                breaker.recordSuccess();
+                return response;
+            }
+
+            breaker.recordFailure();
+
+            if (!canRetry(attempt, maxAttempts)) {
+                return response;
+            }
+
+            long delay = getDelayMillis(attempt, parseRetryAfterMillis(response.header("Retry-After")));
+            logRetry(description, attempt, maxAttempts, delay, "HTTP " + response.code());
+            response.close();
+
+            if (!sleep(delay)) {
+                throw new InterruptedIOException("Interrupted retrying: " + description);
+            }
+        }
+    }
+
+    /**
+     * Check if an API error is transient.
+     */
+    public static boolean isRetryable(ApiException ex) {
+        if (ex.getCode() == 0) {
+            /* No response, so check for a network failure. */
+            return ex.getCause() instanceof IOException && isRetryable((IOException) ex.getCause());
+        }
+
+        return isRetryableStatus(ex.getCode());
+    }
+
+    /**
+     * Check if an API error means that the call wasn't processed (so can safely be repeated).
+     */
+    public static boolean isUnprocessed(ApiException ex) {
+        if (ex.getCode() == 0) {
+            return ex.getCause() instanceof ConnectException
+                || ex.getCause() instanceof NoRouteToHostException
+                || ex.getCause() instanceof UnknownHostException;
+        }
+
+        return ex.getCode() == 429;
+    }
+
+    /**
+     * Check if a network error is transient.
+     *
+     * <p>Only timeouts, failed or reset connections and failed lookups are;
+     * anything else (e.g. a TLS handshake or certificate failure, or a file
+     * that changed while it was uploaded) won't be fixed by a retry.</p>
+     */
+    public static boolean isRetryable(IOException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException
+                    || cause instanceof SocketException
+                    || cause instanceof UnknownHostException
+                    || cause instanceof EOFException
+                    || cause instanceof StreamResetException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if an HTTP status code is transient.
+     */
+    public static boolean isRetryableStatus(int code) {
+        switch (code) {
+            case 408:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Describe an API error (the response body, if any, or the message).
+     */
+    public static String describe(ApiException ex) {
+        if (ex.getResponseBody() != null && !ex.getResponseBody().isEmpty()) {
+            return ex.getResponseBody();
+        }
+
+        return String.valueOf(ex.getMessage());
+    }
+
+    /**
+     * Get the retries remaining in the budget.
+     */
+    public int getRemainingBudget() {
+        return Math.max(0, this.budget.get());
+    }
+
+    // Helpers
+
+    private boolean canRetry(int attempt, int maxAttempts) {
+        if (attempt >= maxAttempts || this.budget.getAndDecrement() <= 0) {
+            return false;
+        }
+
+        if (this.metrics != null) {
+            this.metrics.recordRetry();
+        }
+
+        return true;
+    }
+
+    private static void notifyAttempt(AttemptListener listener, int code, IOException failure) {
+        if (listener != null) {
+            listener.afterAttempt(code, failure);
+        }
+    }
+
+    private void recordCircuitRejection() {
+        if (this.metrics != null) {
+            this.metrics.recordCircuitRejection();
+        }
+    }
+
+    /**
+     * Exponential backoff with full jitter, unless the server told us how long to wait.
+     */
+    long getDelayMillis(int attempt, long retryAfterMillis) {
+        if (retryAfterMillis >= 0) {
+            return Math.min(retryAfterMillis, MAX_RETRY_AFTER_MILLIS);
+        }
+
+        long ceiling = Math.min(
+            this.maxBackoffMillis,
+            this.initialBackoffMillis << Math.min(attempt - 1, 20)
+        );
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static long getRetryAfterMillis(Map<String, List<String>> headers) {
+        if (headers == null) {
+            return -1;
+        }
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if ("Retry-After".equalsIgnoreCase(header.getKey())
+                    && header.getValue() != null && !header.getValue().isEmpty()) {
+                return parseRetryAfterMillis(header.getValue().get(0));
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parse a Retry-After header (either delay-seconds or an HTTP date).
+     */
+    static long parseRetryAfterMillis(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException ex) {
+            /* Absorb - try as a date instead. */
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void logRetry(String description, int attempt, int maxAttempts, long delay, String reason) {
+        System.out.println(String.format(
+            "[INFO] Retrying %s (attempt %d of %d) in %dms: %s",
+            description, attempt + 1, maxAttempts, delay, reason
+        ));
+    }
+}
@@ -0,0 +1,204 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import io.cloudsmith.api.ApiException;
+import io.cloudsmith.api.apis.PackagesApi;
+import io.cloudsmith.api.models.PackageStatus;
+
+
+/**
+ * Waits on the synchronisation of many packages at once.
+ *
+ * <p>Each package is polled independently, starting at the configured sync
+ * wait interval and backing off exponentially (with jitter) up to a maximum
+ * interval, so that a large batch of packages doesn't hammer the API. The
+ * polling is done in the background (by threads shared across the process),
+ * so it can carry on while other packages are deployed.</p>
+ */
+public class SyncWaiter {
+
+    private static final int MAX_THREADS = 8;
+
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private final PackagesApi packagesApi;
+    private final RetryPolicy retryPolicy;
+    private final String apiHost;
+    private final long initialIntervalMillis;
+    private final long maxIntervalMillis;
+
+    public SyncWaiter(
+            PackagesApi packagesApi, RetryPolicy retryPolicy, String apiHost,
+            int initialIntervalSeconds, int maxIntervalSeconds) {
+        this.packagesApi = packagesApi;
+        this.retryPolicy = retryPolicy;
+        this.apiHost = apiHost;
+        this.initialIntervalMillis = TimeUnit.SECONDS.toMillis(initialIntervalSeconds);
+        this.maxIntervalMillis = TimeUnit.SECONDS.toMillis(
+            Math.max(initialIntervalSeconds, maxIntervalSeconds)
+        );
+    }
+
+    /**
+     * Start waiting (in the background) for a package to finish synchronising (or fail).
+     *
+     * @param onStatus called with each status update received (may be null)
+     * @return the outcome for the package, once known
+     */
+    public CompletableFuture<Result> submit(
+            PendingPackage pending, BiConsumer<PendingPackage, PackageStatus> onStatus) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        long startedAt = System.nanoTime();
+        SCHEDULER.execute(() -> poll(pending, startedAt, 0, future, onStatus));
+        return future;
+    }
+
+    // Helpers
+
+    private static ScheduledExecutorService createScheduler() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(MAX_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "cloudsmith-sync-wait-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        /* Only keep threads around while there are packages to wait on. */
+        scheduler.setKeepAliveTime(60, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
+    }
+
+    private void poll(
+            PendingPackage pending, long startedAt, int attempt,
+            CompletableFuture<Result> future, BiConsumer<PendingPackage, PackageStatus> onStatus) {
+        PackageStatus status;
+
+        try {
+            status = this.retryPolicy.callApi(
+                this.apiHost,
+                "package status for " + pending.getSlug(),
+                () -> this.packagesApi.packagesStatus(
+                    pending.getOwnerName(), pending.getRepositoryName(), pending.getSlug()
+                )
+            );
+        } catch (ApiException ex) {
+            future.complete(new Result(
+                pending, startedAt, false, "Could not get status: " + RetryPolicy.describe(ex)
+            ));
+            return;
+        } catch (RuntimeException ex) {
+            future.complete(new Result(pending, startedAt, false, "Could not get status: " + ex.getMessage()));
+            return;
+        }
+
+        if (onStatus != null) {
+            onStatus.accept(pending, status);
+        }
+
+        if (Boolean.TRUE.equals(status.getIsSyncCompleted())) {
+            future.complete(new Result(pending, startedAt, true, status.getStatusStr()));
+        } else if (Boolean.TRUE.equals(status.getIsSyncFailed())) {
+            future.complete(new Result(pending, startedAt, false, status.getStatusReason()));
+        } else {
+            SCHEDULER.schedule(
+                () -> poll(pending, startedAt, attempt + 1, future, onStatus),
+                getDelayMillis(attempt),
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Exponential backoff from the initial interval, capped, with +/-50% jitter.
+     */
+    private long getDelayMillis(int attempt) {
+        long delay = this.initialIntervalMillis << Math.min(attempt, 16);
+        delay = Math.min(delay, this.maxIntervalMillis);
+        return (long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * A package (created upstream) which is waiting to synchronise.
+     */
+    public static class PendingPackage {
+        private final String ownerName;
+        private final String repositoryName;
+        private final String slug;
+        private final String name;
+
+        /**
+         * @param name what the package was deployed from (e.g. its Maven path), for reporting
+         */
+        public PendingPackage(String ownerName, String repositoryName, String slug, String name) {
+            this.ownerName = ownerName;
+            this.repositoryName = repositoryName;
+            this.slug = slug;
+            this.name = name;
+        }
+
+        public String getOwnerName() {
+            return this.ownerName;
+        }
+
+        public String getRepositoryName() {
+            return this.repositoryName;
+        }
+
+        public String getSlug() {
+            return this.slug;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name + " (" + this.ownerName + "/" + this.repositoryName + "/" + this.slug + ")";
+        }
+    }
+
+    /**
+     * The outcome of waiting on a package.
+     */
+    public static class Result {
+        private final PendingPackage pending;
+        private final long startedAt;
+        private final boolean success;
+        private final String message;
+
+        public Result(PendingPackage pending, long startedAt, boolean success, String message) {
+            this.pending = pending;
+            this.startedAt = startedAt;
+            this.success = success;
+            this.message = message;
+        }
+
+        public PendingPackage getPackage() {
+            return this.pending;
+        }
+
+        /**
+         * Get when the wait started (as a {@link System#nanoTime()}).
+         */
+        public long getStartedAt() {
+            return this.startedAt;
+        }
+
+        public boolean isSuccess() {
+            return this.success;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.gson.GsonBuilder;
+
+
+/**
+ * Low-overhead timers and counters for each phase of a transfer.
+ *
+ * <p>Each wagon session records into its own instance, which also feeds a
+ * process-wide instance (registered with JMX), so that both per-session and
+ * cumulative figures are available. Recording only touches striped counters,
+ * so it's cheap enough to do for every file, even with concurrent uploads.</p>
+ */
+public final class TransferMetrics implements TransferMetricsMXBean {
+
+    /**
+     * The phases of a transfer that are timed.
+     */
+    public enum Phase {
+        DETECT,
+        HASH,
+        FILES_CREATE,
+        UPLOAD,
+        PACKAGE_CREATE,
+        SYNC_WAIT,
+        DOWNLOAD
+    }
+
+    /* Upper bounds (in milliseconds) of the latency histogram buckets. */
+    private static final long[] BUCKETS = new long[]{
+        1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, Long.MAX_VALUE
+    };
+
+    private static final String OBJECT_NAME = "io.cloudsmith.maven.wagon:type=TransferMetrics";
+    private static final TransferMetrics GLOBAL = new TransferMetrics(null);
+    private static volatile boolean registered = false;
+
+    private final TransferMetrics parent;
+    private final Map<Phase, PhaseStats> phases = new LinkedHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+    private final long startedAt = System.currentTimeMillis();
+
+    private TransferMetrics(TransferMetrics parent) {
+        this.parent = parent;
+
+        for (Phase phase : Phase.values()) {
+            this.phases.put(phase, new PhaseStats());
+        }
+    }
+
+    /**
+     * Create the metrics for a new session (which also feed the global metrics).
+     */
+    public static TransferMetrics newSession() {
+        if (Properties.isMetricsJmxEnabled()) {
+            registerGlobal();
+        }
+
+        return new TransferMetrics(GLOBAL);
+    }
+
+    /**
+     * Get the process-wide metrics.
+     */
+    public static TransferMetrics getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Record a successful phase, which started at a {@link System#nanoTime()}.
+     */
+    public void record(Phase phase, long startNanos, long bytes) {
+        long elapsed = System.nanoTime() - startNanos;
+        this.phases.get(phase).record(elapsed, bytes, false);
+
+        if (this.parent != null) {
+            this.parent.phases.get(phase).record(elapsed, bytes, false);
+        }
+    }
+
+    /**
+     * Record a failed phase, which started at a {@link System#nanoTime()}.
+     */
+    public void recordFailure(Phase phase, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        this.phases.get(phase).record(elapsed, 0, true);
+
+        if (this.parent != null) {
+            this.parent.phases.get(phase).record(elapsed, 0, true);
+        }
+    }
+
+    public void recordRetry() {
+        this.retries.increment();
+
+        if (this.parent != null) {
+            this.parent.retries.increment();
+        }
+    }
+
+    public void recordCircuitRejection() {
+        this.circuitRejections.increment();
+
+        if (this.parent != null) {
+            this.parent.circuitRejections.increment();
+        }
+    }
+
+    @Override
+    public Map<String, PhaseSnapshot> getPhases() {
+        Map<String, PhaseSnapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<Phase, PhaseStats> entry : this.phases.entrySet()) {
+            snapshots.put(entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue().snapshot());
+        }
+
+        return snapshots;
+    }
+
+    @Override
+    public long getRetries() {
+        return this.retries.sum();
+    }
+
+    @Override
+    public long getCircuitRejections() {
+        return this.circuitRejections.sum();
+    }
+
+    @Override
+    public String getReport() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(toMap(null));
+    }
+
+    @Override
+    public void reset() {
+        for (PhaseStats stats : this.phases.values()) {
+            stats.reset();
+        }
+
+        this.retries.reset();
+        this.circuitRejections.reset();
+    }
+
+    /**
+     * Write the metrics (and some details of the session) as a JSON report.
+     */
+    public void writeReport(Path path, Map<String, Object> details) throws IOException {
+        Path parentPath = path.toAbsolutePath().getParent();
+        if (parentPath != null) {
+            Files.createDirectories(parentPath);
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        String json = new GsonBuilder().setPrettyPrinting().create().toJson(toMap(details));
+        Files.write(temp, json.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Helpers
+
+    private Map<String, Object> toMap(Map<String, Object> details) {
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        if (details != null) {
+            report.putAll(details);
+        }
+
+        report.put("started_at", this.startedAt);
+        report.put("finished_at", System.currentTimeMillis());
+        report.put("retries", getRetries());
+        report.put("circuit_rejections", getCircuitRejections());
+
+        Map<String, Object> phaseReports = new LinkedHashMap<>();
+        for (Map.Entry<String, PhaseSnapshot> entry : getPhases().entrySet()) {
+            PhaseSnapshot snapshot = entry.getValue();
+            if (snapshot.getCount() == 0 && snapshot.getFailures() == 0) {
+                continue;
+            }
+
+            Map<String, Object> phaseReport = new LinkedHashMap<>();
+            phaseReport.put("count", snapshot.getCount());
+            phaseReport.put("failures", snapshot.getFailures());
+            phaseReport.put("bytes", snapshot.getBytes());
+            phaseReport.put("total_ms", snapshot.getTotalMillis());
+            phaseReport.put("max_ms", snapshot.getMaxMillis());
+            phaseReport.put("mean_ms", snapshot.getMeanMillis());
+            phaseReport.put("p50_ms", snapshot.getP50Millis());
+            phaseReport.put("p90_ms", snapshot.getP90Millis());
+            phaseReport.put("p99_ms", snapshot.getP99Millis());
+            phaseReport.put("bytes_per_second", snapshot.getBytesPerSecond());
+            phaseReport.put("histogram_ms", snapshot.getHistogram());
+            phaseReports.put(entry.getKey(), phaseReport);
+        }
+
+        report.put("phases", phaseReports);
+        return report;
+    }
+
+    private static synchronized void registerGlobal() {
+        if (registered) {
+            return;
+        }
+
+        registered = true;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(GLOBAL, name);
+            }
+        } catch (JMException | SecurityException ex) {
+            System.out.println("[WARN] Could not register transfer metrics with JMX: " + ex.getMessage());
+        }
+    }
+
+    private static String getBucketName(int index) {
+        return BUCKETS[index] == Long.MAX_VALUE ? "+inf" : "le_" + BUCKETS[index];
+    }
+
+    /**
+     * Counters for a single phase.
+     */
+    private static final class PhaseStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] histogram = new LongAdder[BUCKETS.length];
+
+        PhaseStats() {
+            for (int i = 0; i < this.histogram.length; i++) {
+                this.histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long elapsedNanos, long byteCount, boolean failed) {
+            if (failed) {
+                this.failures.increment();
+            } else {
+                this.count.increment();
+                this.bytes.add(byteCount);
+            }
+
+            this.totalNanos.add(elapsedNanos);
+            this.maxNanos.accumulate(elapsedNanos);
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            int bucket = 0;
+            while (millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+
+            this.histogram[bucket].increment();
+        }
+
+        void reset() {
+            this.count.reset();
+            this.failures.reset();
+            this.bytes.reset();
+            this.totalNanos.reset();
+            this.maxNanos.reset();
+
+            for (LongAdder adder : this.histogram) {
+                adder.reset();
+            }
+        }
+
+        PhaseSnapshot snapshot() {
+            long[] counts = new long[this.histogram.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = this.histogram[i].sum();
+            }
+
+            return new PhaseSnapshot(
+                this.count.sum(), this.failures.sum(), this.bytes.sum(),
+                this.totalNanos.sum(), this.maxNanos.get(), counts
+            );
+        }
+    }
+
+    /**
+     * A point-in-time copy of the counters for a phase.
+     */
+    public static final class PhaseSnapshot {
+        private final long count;
+        private final long failures;
+        private final long bytes;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        PhaseSnapshot(
+                long count, long failures, long bytes, long totalNanos, long maxNanos, long[] histogram) {
+            this.count = count;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getFailures() {
+            return this.failures;
+        }
+
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.totalNanos);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.maxNanos);
+        }
+
+        public double getMeanMillis() {
+            long total = this.count + this.failures;
+            return total == 0 ? 0 : this.totalNanos / 1e6 / total;
+        }
+
+        public long getP50Millis() {
+            return getPercentileMillis(0.50);
+        }
+
+        public long getP90Millis() {
+            return getPercentileMillis(0.90);
+        }
+
+        public long getP99Millis() {
+            return getPercentileMillis(0.99);
+        }
+
+        public long getBytesPerSecond() {
+            return this.totalNanos == 0 ? 0 : (long) (this.bytes / (this.totalNanos / 1e9));
+        }
+
+        public Map<String, Long> getHistogram() {
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < this.histogram.length; i++) {
+                buckets.put(getBucketName(i), this.histogram[i]);
+            }
+
+            return buckets;
+        }
+
+        /**
+         * Estimate a percentile (as the upper bound of the bucket it falls in).
+         */
+        private long getPercentileMillis(double percentile) {
+            long total = 0;
+            for (long bucketCount : this.histogram) {
+                total += bucketCount;
+            }
+
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+
+            for (int i = 0; i < this.histogram.length; i++) {
+                seen += this.histogram[i];
+                if (seen >= target) {
+                    return Math.min(BUCKETS[i], getMaxMillis());
+                }
+            }
+
+            return getMaxMillis();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.Map;
+
+
+/**
+ * Management interface for the (process-wide) wagon transfer metrics.
+ */
+public interface TransferMetricsMXBean {
+
+    /**
+     * Get the statistics for each phase of a transfer, keyed by phase name.
+     */
+    Map<String, TransferMetrics.PhaseSnapshot> getPhases();
+
+    long getRetries();
+
+    long getCircuitRejections();
+
+    /**
+     * Get all metrics as a JSON document.
+     */
+    String getReport();
+
+    void reset();
+}
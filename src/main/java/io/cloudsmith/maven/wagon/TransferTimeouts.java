@@ -0,0 +1,49 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+
+/**
+ * Stall detection for uploads.
+ *
+ * <p>OkHttp's write timeout applies to each write to the socket, so it
+ * detects a stalled upload (no bytes sent for a while), however big the
+ * file is. For uploads tagged with {@link #UPLOAD}, it's set to the (short)
+ * stall timeout, so a small POM fails quickly on a dead connection, while a
+ * large WAR still gets as long as it needs, as long as it keeps making
+ * progress. There's deliberately no deadline for the upload as a whole,
+ * which would have to guess how fast the connection is.</p>
+ */
+public final class TransferTimeouts implements Interceptor {
+
+    /**
+     * The tag for upload requests.
+     */
+    public static final Object UPLOAD = new Object();
+
+    private static final TransferTimeouts INSTANCE = new TransferTimeouts();
+
+    private TransferTimeouts() {
+    }
+
+    public static TransferTimeouts getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!Properties.isHttpAdaptiveEnabled() || request.tag() != UPLOAD) {
+            return chain.proceed(request);
+        }
+
+        return chain
+            .withWriteTimeout(Properties.getHttpStallTimeout(), TimeUnit.SECONDS)
+            .proceed(request);
+    }
+}
@@ -0,0 +1,232 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+
+/**
+ * Local content-addressed index of files already uploaded to Cloudsmith.
+ *
+ * <p>Maps a repository, filename and file checksums to the identifier
+ * returned by the files API, so that identical files can be attached to a
+ * package without uploading them again. Timestamped snapshot files are
+ * matched by their base (<code>-SNAPSHOT</code>) name, since each deployment
+ * of a snapshot gets a new timestamp. An identifier can only be attached to
+ * one package, so entries are evicted once their package has been created,
+ * and they also expire after a TTL, since the upstream identifiers are not
+ * valid forever.</p>
+ *
+ * <p>The index is persisted as an append-only tab-separated file, which is
+ * compacted (expired, evicted and superseded entries dropped) when it is
+ * loaded, if there are any.</p>
+ */
+public final class UploadIndex {
+
+    private static final ConcurrentMap<Path, UploadIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final Pattern SNAPSHOT_TIMESTAMP = Pattern.compile("-\\d{8}\\.\\d{6}-\\d+(?=[-.])");
+
+    private final Path path;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded = false;
+
+    private UploadIndex(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Get the (shared) index stored at a path.
+     */
+    public static UploadIndex forPath(Path path) {
+        return INDEXES.computeIfAbsent(path.toAbsolutePath().normalize(), UploadIndex::new);
+    }
+
+    /**
+     * Get the configured index, or null if upload deduplication isn't enabled.
+     */
+    public static UploadIndex getShared() {
+        if (!Properties.isUploadDedupEnabled()) {
+            return null;
+        }
+
+        return forPath(Paths.get(Properties.getUploadDedupPath()));
+    }
+
+    /**
+     * Get the name of a file without its snapshot timestamp (if any).
+     *
+     * <p>E.g. <code>lib-1.0-20240101.120000-3-sources.jar</code> becomes
+     * <code>lib-1.0-SNAPSHOT-sources.jar</code>.</p>
+     */
+    static String getBaseName(String filename) {
+        return SNAPSHOT_TIMESTAMP.matcher(filename).replaceFirst("-SNAPSHOT");
+    }
+
+    /**
+     * Look up the identifier of an identical file previously uploaded to a repository.
+     */
+    public synchronized String lookup(String owner, String repo, String filename, String sha256, String md5)
+            throws IOException {
+        load();
+
+        String key = getKey(owner, repo, filename, sha256, md5);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            this.entries.remove(key);
+            return null;
+        }
+
+        return entry.getIdentifier();
+    }
+
+    /**
+     * Record the identifier of a file uploaded to a repository.
+     */
+    public synchronized void record(
+            String owner, String repo, String filename, String sha256, String md5, String identifier,
+            long ttlMillis) throws IOException {
+        load();
+
+        String key = getKey(owner, repo, filename, sha256, md5);
+        Entry entry = new Entry(identifier, System.currentTimeMillis() + ttlMillis);
+        this.entries.put(key, entry);
+        append(key, entry);
+    }
+
+    /**
+     * Evict all entries for an identifier (e.g. if upstream rejected it, or it has been used).
+     */
+    public synchronized void evict(String identifier) throws IOException {
+        load();
+
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+            if (item.getValue().getIdentifier().equals(identifier)) {
+                keys.add(item.getKey());
+            }
+        }
+
+        for (String key : keys) {
+            this.entries.remove(key);
+            append(key, new Entry(identifier, 0));
+        }
+    }
+
+    // Helpers
+
+    private void load() throws IOException {
+        if (this.loaded) {
+            return;
+        }
+
+        this.loaded = true;
+
+        if (!Files.exists(this.path)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> lines = Files.readAllLines(this.path, StandardCharsets.UTF_8);
+
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3) {
+                continue;
+            }
+
+            long expiresAt;
+
+            try {
+                expiresAt = Long.parseLong(parts[2]);
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+
+            Entry entry = new Entry(parts[1], expiresAt);
+            if (entry.isExpired(now)) {
+                this.entries.remove(parts[0]);
+            } else {
+                this.entries.put(parts[0], entry);
+            }
+        }
+
+        if (this.entries.size() < lines.size()) {
+            /* Some lines were dropped, so they're not worth keeping. */
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+                writer.write(formatLine(item.getKey(), item.getValue()));
+            }
+        }
+
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void append(String key, Entry entry) throws IOException {
+        Path parent = this.path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(
+                this.path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(formatLine(key, entry));
+        }
+    }
+
+    private static String formatLine(String key, Entry entry) {
+        return key + "\t" + entry.getIdentifier() + "\t" + entry.getExpiresAt() + "\n";
+    }
+
+    private static String getKey(String owner, String repo, String filename, String sha256, String md5) {
+        return owner + "/" + repo + "/" + getBaseName(filename) + "/" + sha256 + "/" + md5;
+    }
+
+    /**
+     * An upstream file identifier and the time at which it expires.
+     */
+    private static final class Entry {
+        private final String identifier;
+        private final long expiresAt;
+
+        Entry(String identifier, long expiresAt) {
+            this.identifier = identifier;
+            this.expiresAt = expiresAt;
+        }
+
+        String getIdentifier() {
+            return this.identifier;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+}
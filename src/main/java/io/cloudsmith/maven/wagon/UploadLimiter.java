@@ -0,0 +1,205 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+
+/**
+ * Process-wide, adaptive limit on the number of uploads in progress at once.
+ *
+ * <p>The limit is adjusted AIMD-style (as with TCP congestion control). Each
+ * time a "round" of uploads (as many as the limit) completes while the limit
+ * was reached, the limit is increased by one if the overall throughput
+ * improved on the previous round. It's halved if an upload is much slower
+ * (per byte) than usual, is throttled (HTTP 429) or times out, since those
+ * all suggest that the link (or upstream) is saturated.</p>
+ *
+ * <p>Each attempt to send an upload (including retries) is limited and
+ * counted separately, so congestion is reported as soon as it happens, and
+ * an upload doesn't hold its place while backing off to retry.</p>
+ */
+public final class UploadLimiter {
+
+    /* Small files are dominated by per-request overhead, so count them as this size. */
+    private static final long MIN_SAMPLE_BYTES = 1024 * 1024;
+    private static final int MIN_SAMPLES = 5;
+    private static final double SPIKE_FACTOR = 3.0;
+    private static final double IMPROVEMENT_FACTOR = 1.05;
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static UploadLimiter sharedLimiter = null;
+
+    private final int maxLimit;
+    private int limit;
+    private int inFlight = 0;
+
+    private double baselineNanosPerByte = 0;
+    private int samples = 0;
+
+    private long roundStart = System.nanoTime();
+    private long roundBytes = 0;
+    private int roundUploads = 0;
+    private boolean roundSaturated = false;
+    private double lastThroughput = 0;
+    private long lastDecreaseAt = System.nanoTime();
+
+    private UploadLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(initialLimit, maxLimit);
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Get the shared limiter, or null if adaptive concurrency isn't enabled.
+     */
+    public static synchronized UploadLimiter getShared() {
+        if (!Properties.isUploadAdaptiveEnabled()) {
+            return null;
+        }
+
+        if (sharedLimiter == null) {
+            sharedLimiter = new UploadLimiter(
+                Properties.getUploadAsyncThreads(),
+                Properties.getUploadAdaptiveMax()
+            );
+        }
+
+        return sharedLimiter;
+    }
+
+    /**
+     * Get a listener that limits each attempt to send an upload (of a number of bytes), and adjusts the limit.
+     */
+    public RetryPolicy.AttemptListener forUpload(long bytes) {
+        return new Attempts(bytes);
+    }
+
+    /**
+     * Record that an upload was throttled (or otherwise suggests congestion).
+     *
+     * <p>Uploads that started before the limit was last reduced were sent
+     * under the old limit, so they don't reduce it again.</p>
+     *
+     * @param startedAt when the upload started (as a {@link System#nanoTime()})
+     */
+    public synchronized void recordCongestion(long startedAt, String reason) {
+        if (startedAt - this.lastDecreaseAt < 0) {
+            return;
+        }
+
+        this.lastDecreaseAt = System.nanoTime();
+        int previous = this.limit;
+        this.limit = Math.max(1, this.limit / 2);
+
+        if (this.limit != previous) {
+            System.out.println(
+                "[INFO] Reducing upload concurrency from " + previous + " to " + this.limit + " (" + reason + ")"
+            );
+        }
+
+        /* Start a new round at the new limit. */
+        this.lastThroughput = 0;
+        resetRound();
+    }
+
+    public synchronized int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * The attempts to send an upload.
+     */
+    private final class Attempts implements RetryPolicy.AttemptListener {
+        private final long bytes;
+        private long start;
+
+        Attempts(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void beforeAttempt() throws IOException {
+            acquire();
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void afterAttempt(int code, IOException failure) {
+            try {
+                if (code == HTTP_TOO_MANY_REQUESTS) {
+                    recordCongestion(this.start, "throttled");
+                } else if (failure instanceof SocketTimeoutException) {
+                    recordCongestion(this.start, "timeout");
+                } else if (code >= 200 && code < 300) {
+                    recordSuccess(this.bytes, this.start);
+                }
+            } finally {
+                release();
+            }
+        }
+    }
+
+    // Helpers
+
+    private synchronized void acquire() throws InterruptedIOException {
+        while (this.inFlight >= this.limit) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to upload");
+            }
+        }
+
+        this.inFlight++;
+        if (this.inFlight >= this.limit) {
+            this.roundSaturated = true;
+        }
+    }
+
+    private synchronized void release() {
+        this.inFlight--;
+        notifyAll();
+    }
+
+    private synchronized void recordSuccess(long bytes, long startedAt) {
+        double nanosPerByte = (double) (System.nanoTime() - startedAt) / Math.max(bytes, MIN_SAMPLE_BYTES);
+
+        if (this.samples >= MIN_SAMPLES && nanosPerByte > this.baselineNanosPerByte * SPIKE_FACTOR) {
+            recordCongestion(startedAt, "latency spike");
+            return;
+        }
+
+        this.baselineNanosPerByte = this.samples == 0
+            ? nanosPerByte
+            : this.baselineNanosPerByte * (1 - EWMA_WEIGHT) + nanosPerByte * EWMA_WEIGHT;
+        this.samples++;
+
+        this.roundBytes += bytes;
+        this.roundUploads++;
+
+        if (this.roundUploads < this.limit) {
+            return;
+        }
+
+        long roundNanos = Math.max(System.nanoTime() - this.roundStart, 1);
+        double throughput = this.roundBytes * 1e9 / roundNanos;
+
+        if (this.roundSaturated && this.limit < this.maxLimit
+                && throughput >= this.lastThroughput * IMPROVEMENT_FACTOR) {
+            this.limit++;
+            notifyAll();
+        }
+
+        this.lastThroughput = throughput;
+        resetRound();
+    }
+
+    private void resetRound() {
+        this.roundStart = System.nanoTime();
+        this.roundBytes = 0;
+        this.roundUploads = 0;
+        this.roundSaturated = this.inFlight >= this.limit;
+    }
+}
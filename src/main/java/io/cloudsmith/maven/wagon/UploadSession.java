@@ -0,0 +1,191 @@
+package io.cloudsmith.maven.wagon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.cloudsmith.api.models.PackagesUploadMaven;
+
+
+/**
+ * The state of the upload of a single package (groupId/artifactId/version)
+ * to a single (target) repository.
+ *
+ * <p>A session is keyed by the directory that the package's files are put
+ * into, and lasts from the first file until the package is finalised (when
+ * the metadata for its version or artifact is put). Keeping this state per
+ * package lets one wagon upload several packages at once, e.g. for a
+ * parallel (<code>-T</code>) reactor build.</p>
+ */
+public final class UploadSession {
+
+    private final String key;
+    private final CloudsmithRepository target;
+    private final PackagesUploadMaven packageParams = new PackagesUploadMaven();
+    private final List<Future<Void>> pendingUploads = new ArrayList<>();
+    private final Set<String> indexedIdentifiers = ConcurrentHashMap.newKeySet();
+    private final Set<String> uploadedIdentifiers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final Map<String, String> fileChecksums = new ConcurrentHashMap<>();
+    private final List<Callable<Void>> journaledUploads = new ArrayList<>();
+    private volatile String journaledSlug = null;
+    private volatile boolean uploaded = false;
+
+    public UploadSession(String key, CloudsmithRepository target) {
+        this.key = key;
+        this.target = target;
+    }
+
+    /**
+     * Get the session key for a (destination) path, i.e. its directory.
+     */
+    public static String keyOf(String path) {
+        String normalised = path.replace('\\', '/');
+
+        while (normalised.startsWith("/")) {
+            normalised = normalised.substring(1);
+        }
+
+        int k = normalised.lastIndexOf('/');
+        return k >= 0 ? normalised.substring(0, k) : "";
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public CloudsmithRepository getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Get the key qualified by the target repository (i.e. owner/repo/key).
+     */
+    public String getQualifiedKey() {
+        return getQualifiedKey(this.key, this.target);
+    }
+
+    /**
+     * Get the key for a path, qualified by a target repository.
+     */
+    public static String getQualifiedKey(String key, CloudsmithRepository target) {
+        return target.getOwnerName() + "/" + target.getRepositoryName() + "/" + key;
+    }
+
+    /**
+     * Check if metadata put into a directory finalises this session.
+     *
+     * <p>That's the case for metadata put for the version (as with snapshots)
+     * or for the artifact (as with releases) of the package, but not for an
+     * artifact in a nested group, which could still be being uploaded.</p>
+     */
+    public boolean isFinalisedBy(String metadataKey) {
+        return this.key.equals(metadataKey) || keyOf(this.key).equals(metadataKey);
+    }
+
+    /**
+     * Get the parameters for creating the package (synchronise on them to modify).
+     */
+    public PackagesUploadMaven getPackageParams() {
+        return this.packageParams;
+    }
+
+    public synchronized void addPendingUpload(Future<Void> upload) {
+        this.pendingUploads.add(upload);
+    }
+
+    /**
+     * Remove and return the uploads that are still queued or in progress.
+     */
+    public synchronized List<Future<Void>> drainPendingUploads() {
+        List<Future<Void>> uploads = new ArrayList<>(this.pendingUploads);
+        this.pendingUploads.clear();
+        return uploads;
+    }
+
+    /**
+     * Get the identifiers of the files attached to the package that were uploaded before.
+     */
+    public Set<String> getIndexedIdentifiers() {
+        return this.indexedIdentifiers;
+    }
+
+    /**
+     * Get the identifiers of the files attached to the package that were uploaded by this session.
+     */
+    public Set<String> getUploadedIdentifiers() {
+        return this.uploadedIdentifiers;
+    }
+
+    /**
+     * Record the checksum of a file attached to the package (for the journal).
+     */
+    public void addFileChecksum(String filename, String sha256) {
+        this.fileChecksums.put(filename, sha256);
+    }
+
+    public Map<String, String> getFileChecksums() {
+        return this.fileChecksums;
+    }
+
+    /**
+     * Skip the upload of a file that the journal says was already deployed.
+     *
+     * <p>The upload is kept, in case another file in the package has changed
+     * and the package needs to be created again after all.</p>
+     */
+    public synchronized void addJournaledUpload(String slug, Callable<Void> upload) {
+        this.journaledSlug = slug;
+        this.journaledUploads.add(upload);
+    }
+
+    /**
+     * Remove and return the uploads that were skipped because of the journal.
+     */
+    public synchronized List<Callable<Void>> drainJournaledUploads() {
+        List<Callable<Void>> uploads = new ArrayList<>(this.journaledUploads);
+        this.journaledUploads.clear();
+        return uploads;
+    }
+
+    /**
+     * Get the slug of the package, if the journal says it was already created.
+     */
+    public String getJournaledSlug() {
+        return this.journaledSlug;
+    }
+
+    /**
+     * Check if any file was attached to the package (rather than skipped).
+     */
+    public boolean isUploaded() {
+        return this.uploaded;
+    }
+
+    public void setUploaded() {
+        this.uploaded = true;
+    }
+
+    public boolean isFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Flag the session as failed.
+     *
+     * @return true if the session hadn't already failed
+     */
+    public boolean setFailed() {
+        return this.failed.compareAndSet(false, true);
+    }
+
+    @Override
+    public String toString() {
+        return getQualifiedKey();
+    }
+}
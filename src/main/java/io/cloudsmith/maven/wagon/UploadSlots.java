@@ -0,0 +1,239 @@
+package io.cloudsmith.maven.wagon;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cloudsmith.api.ApiException;
+import io.cloudsmith.api.models.FilesCreate;
+import io.cloudsmith.api.models.PackageFileUpload;
+
+
+/**
+ * Uploads requested ahead of time, for files that are expected to be put soon.
+ *
+ * <p>Maven puts the files of a package one at a time, usually from the same
+ * (build) directory and named after the same artifact, e.g. the JAR, then the
+ * POM, then the sources and javadoc. Every package in a build tends to be
+ * made up of the same kinds of file, so the suffixes of the files put after
+ * the artifact's name (e.g. <code>.pom</code> or <code>-sources.jar</code>)
+ * are remembered across the process. When a file is put, the upload
+ * (identifier and pre-signed upload details) for each sibling with one of
+ * those suffixes is requested in the background, so that requesting the
+ * upload of the next file overlaps the sending of this one. Files that Maven
+ * hasn't put for any package so far (e.g. other build outputs in the same
+ * directory) aren't requested.</p>
+ *
+ * <p>Each sibling is requested under the name it's expected to be put as,
+ * i.e. with the destination's name in place of the file's own (the two differ
+ * for timestamped snapshots, or a custom final name), and a slot is only used
+ * if the file is put under that name and hasn't changed since it was
+ * requested (i.e. its checksum matches).</p>
+ */
+public final class UploadSlots {
+
+    /* Pre-signed uploads expire, so don't use slots that have been held for too long. */
+    private static final long SLOT_TTL_MILLIS = 5 * 60 * 1000L;
+    private static final int MAX_SIBLINGS = 8;
+    private static final int MAX_SUFFIXES = 32;
+    private static final int MAX_THREADS = 4;
+
+    private static final Set<String> SUFFIXES = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * A call that requests an upload from upstream.
+     */
+    public interface Requester {
+        PackageFileUpload request(FilesCreate filesParams) throws ApiException;
+    }
+
+    /**
+     * Request uploads in the background for the siblings of a file being put.
+     *
+     * <p>Each file is only requested once (and never after it has been put
+     * itself), so this can be called for every file.</p>
+     *
+     * @param packageKey the package's session key (i.e. its groupId/artifactId/version path)
+     * @param filename the name the file is being put as
+     */
+    public void preallocateSiblings(
+            CloudsmithRepository target, String packageKey, File source, String filename, Requester requester) {
+        this.seen.add(getKey(target, filename));
+
+        String suffix = getSuffix(packageKey, filename);
+        String sourceName = source.getName();
+        if (suffix == null || !sourceName.endsWith(suffix)) {
+            /* The names of the siblings can't be predicted. */
+            return;
+        }
+
+        if (SUFFIXES.size() < MAX_SUFFIXES) {
+            SUFFIXES.add(suffix);
+        }
+
+        String sourcePrefix = sourceName.substring(0, sourceName.length() - suffix.length());
+        String filenamePrefix = filename.substring(0, filename.length() - suffix.length());
+        File directory = source.getAbsoluteFile().getParentFile();
+        int siblings = 0;
+
+        for (String siblingSuffix : SUFFIXES) {
+            String siblingFilename = filenamePrefix + siblingSuffix;
+            File sibling = new File(directory, sourcePrefix + siblingSuffix);
+            String key = getKey(target, siblingFilename);
+
+            if (siblings >= MAX_SIBLINGS || !sibling.isFile() || !this.seen.add(key)) {
+                continue;
+            }
+
+            siblings++;
+            ArtifactFile artifact = ArtifactFile.of(sibling);
+            CompletableFuture<PackageFileUpload> upload = CompletableFuture.supplyAsync(() -> {
+                FilesCreate filesParams = new FilesCreate();
+                filesParams.setFilename(siblingFilename);
+
+                try {
+                    filesParams.setMd5Checksum(artifact.getMd5());
+                    return requester.request(filesParams);
+                } catch (ApiException | IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, EXECUTOR);
+
+            this.slots.put(key, new Slot(
+                upload, artifact, siblingFilename, System.currentTimeMillis() + SLOT_TTL_MILLIS
+            ));
+        }
+    }
+
+    /**
+     * Take the upload requested ahead of time for a file, waiting for it if still in progress.
+     *
+     * @param filename the name the file is being put as
+     * @return the upload, or null if none was requested (or it's unusable)
+     */
+    public PackageFileUpload take(CloudsmithRepository target, String filename, ArtifactFile artifact) {
+        Slot slot = this.slots.remove(getKey(target, filename));
+        if (slot == null) {
+            return null;
+        }
+
+        try {
+            PackageFileUpload upload = slot.getUpload().join();
+
+            if (System.currentTimeMillis() >= slot.getExpiresAt()
+                    || !slot.getFilename().equals(filename)
+                    || !slot.getArtifact().getMd5().equals(artifact.getMd5())) {
+                return null;
+            }
+
+            return upload;
+        } catch (CompletionException | IOException ex) {
+            /* Absorb - the upload will just be requested again. */
+            return null;
+        }
+    }
+
+    /**
+     * Forget all slots (any unused uploads expire upstream).
+     */
+    public void clear() {
+        this.slots.clear();
+        this.seen.clear();
+    }
+
+    // Helpers
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "cloudsmith-preallocate-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        /* Only keep threads around while there are uploads to request. */
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get what follows the artifact's name in the name of a file of a package.
+     *
+     * <p>E.g. <code>-sources.jar</code> for <code>lib-1.0-sources.jar</code>
+     * in <code>com/example/lib/1.0</code>, or null if the file isn't named
+     * after the package's artifact and version.</p>
+     */
+    static String getSuffix(String packageKey, String filename) {
+        String[] parts = packageKey.split("/");
+        if (parts.length < 2) {
+            return null;
+        }
+
+        String prefix = parts[parts.length - 2] + "-" + parts[parts.length - 1];
+        String name = UploadIndex.getBaseName(filename);
+
+        if (name.length() <= prefix.length() || !name.startsWith(prefix)) {
+            return null;
+        }
+
+        String suffix = name.substring(prefix.length());
+        if (suffix.charAt(0) != '-' && suffix.charAt(0) != '.') {
+            return null;
+        }
+
+        return suffix;
+    }
+
+    private static String getKey(CloudsmithRepository target, String filename) {
+        return target + "|" + filename;
+    }
+
+    /**
+     * An upload requested for a file (under a name), and the time at which it expires.
+     */
+    private static final class Slot {
+        private final CompletableFuture<PackageFileUpload> upload;
+        private final ArtifactFile artifact;
+        private final String filename;
+        private final long expiresAt;
+
+        Slot(CompletableFuture<PackageFileUpload> upload, ArtifactFile artifact, String filename, long expiresAt) {
+            this.upload = upload;
+            this.artifact = artifact;
+            this.filename = filename;
+            this.expiresAt = expiresAt;
+        }
+
+        CompletableFuture<PackageFileUpload> getUpload() {
+            return this.upload;
+        }
+
+        ArtifactFile getArtifact() {
+            return this.artifact;
+        }
+
+        String getFilename() {
+            return this.filename;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+    }
+}
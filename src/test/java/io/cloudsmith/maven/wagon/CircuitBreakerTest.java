@@ -0,0 +1,91 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class CircuitBreakerTest {
+
+    private static final long NEVER = TimeUnit.DAYS.toNanos(1);
+    private static final long COOLDOWN_MILLIS = 200;
+
+    @Test
+    public void opensAtThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, NEVER);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, NEVER);
+
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void allowsOneTrialAfterCooldown() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+
+        breaker.recordFailure();
+        assertTrue(breaker.isOpen());
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void closesOnSuccessfulTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void reopensOnFailedTrial() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, TimeUnit.MILLISECONDS.toNanos(COOLDOWN_MILLIS));
+
+        breaker.recordFailure();
+        Thread.sleep(COOLDOWN_MILLIS);
+
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+
+        /* A new cooldown starts from the failed trial. */
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void abandonedTrialFreesTheTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.recordAbandoned();
+
+        assertTrue(breaker.isOpen());
+        assertTrue(breaker.allowRequest());
+    }
+}
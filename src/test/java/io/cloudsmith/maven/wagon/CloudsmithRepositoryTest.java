@@ -0,0 +1,94 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.apache.maven.wagon.repository.Repository;
+import org.junit.Test;
+
+
+public class CloudsmithRepositoryTest {
+
+    @Test
+    public void parsesRepository() {
+        CloudsmithRepository repository = parse("cloudsmith+https://api.cloudsmith.io/owner/repo");
+
+        assertEquals("https://api.cloudsmith.io", repository.getApiUrl());
+        assertEquals("owner", repository.getOwnerName());
+        assertEquals("repo", repository.getRepositoryName());
+        assertEquals(1, repository.getTargets().size());
+        assertSame(repository, repository.getTargets().get(0));
+    }
+
+    @Test
+    public void parsesApiPath() {
+        CloudsmithRepository repository = parse("cloudsmith+https://cs.example.com:8443/api/v1/owner/repo");
+
+        assertEquals("https://cs.example.com:8443/api/v1", repository.getApiUrl());
+        assertEquals("owner/repo", repository.toString());
+    }
+
+    @Test
+    public void parsesMirrors() {
+        CloudsmithRepository repository = parse(
+            "cloudsmith+https://api.cloudsmith.io/owner/repo?mirrors=owner/other,partner/repo"
+        );
+        List<CloudsmithRepository> targets = repository.getTargets();
+
+        assertEquals(3, targets.size());
+        assertSame(repository, targets.get(0));
+        assertEquals("owner/other", targets.get(1).toString());
+        assertEquals("partner/repo", targets.get(2).toString());
+        assertEquals("https://api.cloudsmith.io", targets.get(2).getApiUrl());
+        assertSame(targets.get(2), targets.get(2).getTargets().get(0));
+    }
+
+    @Test
+    public void parsesEncodedMirrors() {
+        CloudsmithRepository repository = parse(
+            "cloudsmith+https://api.cloudsmith.io/owner/repo?mirrors=owner%2Fother%2C%20partner%2Frepo"
+        );
+
+        assertEquals("[owner/repo, owner/other, partner/repo]", repository.getTargets().toString());
+    }
+
+    @Test
+    public void ignoresOtherParametersAndEmptyMirrors() {
+        CloudsmithRepository repository = parse(
+            "cloudsmith+https://api.cloudsmith.io/owner/repo?other=x/y&mirrors=,owner/other,&mirrorsx=a/b"
+        );
+
+        assertEquals("[owner/repo, owner/other]", repository.getTargets().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMirrorWithoutRepository() {
+        parse("cloudsmith+https://api.cloudsmith.io/owner/repo?mirrors=owner");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMirrorWithExtraPath() {
+        parse("cloudsmith+https://api.cloudsmith.io/owner/repo?mirrors=owner/other/extra");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherSchemes() {
+        parse("https://api.cloudsmith.io/owner/repo");
+    }
+
+    @Test
+    public void cachesParsedRepositories() {
+        String url = "cloudsmith+https://api.cloudsmith.io/owner/cached?mirrors=owner/other";
+
+        assertSame(
+            CloudsmithRepository.of(new Repository("first", url)),
+            CloudsmithRepository.of(new Repository("second", url))
+        );
+    }
+
+    private static CloudsmithRepository parse(String url) {
+        return new CloudsmithRepository(new Repository("cloudsmith", url));
+    }
+}
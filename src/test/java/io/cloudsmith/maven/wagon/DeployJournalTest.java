@@ -0,0 +1,157 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class DeployJournalTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final String PACKAGE = "owner/repo/com.example/lib/1.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void looksUpRecordedFiles() throws IOException {
+        DeployJournal journal = DeployJournal.forPath(newPath());
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", TTL);
+
+        assertEquals("id1", journal.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.jar", "bbbb"));
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.pom", "aaaa"));
+        assertNull(journal.lookupPackage(PACKAGE));
+    }
+
+    @Test
+    public void packageSupersedesItsFiles() throws IOException {
+        DeployJournal journal = DeployJournal.forPath(newPath());
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", TTL);
+        journal.recordPackage(PACKAGE, "lib-abcd", getFiles(), TTL);
+
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertEquals("lib-abcd", journal.lookupPackage(PACKAGE));
+        assertTrue(journal.hasPackageFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertFalse(journal.hasPackageFile(PACKAGE, "lib-1.0.jar", "cccc"));
+        assertFalse(journal.hasPackageFile(PACKAGE, "lib-1.0-sources.jar", "aaaa"));
+    }
+
+    @Test
+    public void expiresEntries() throws IOException {
+        DeployJournal journal = DeployJournal.forPath(newPath());
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", -1);
+        journal.recordPackage("owner/repo/com.example/other/1.0", "other-abcd", getFiles(), -1);
+
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertNull(journal.lookupPackage("owner/repo/com.example/other/1.0"));
+    }
+
+    @Test
+    public void evictsAndRemoves() throws IOException {
+        DeployJournal journal = DeployJournal.forPath(newPath());
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", TTL);
+        journal.recordFile(PACKAGE, "lib-1.0.pom", "bbbb", "id2", TTL);
+        journal.recordPackage("owner/repo/com.example/other/1.0", "other-abcd", getFiles(), TTL);
+
+        journal.evict("id1");
+        journal.removePackage("owner/repo/com.example/other/1.0");
+
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertEquals("id2", journal.lookupFile(PACKAGE, "lib-1.0.pom", "bbbb"));
+        assertNull(journal.lookupPackage("owner/repo/com.example/other/1.0"));
+    }
+
+    @Test
+    public void reloadsFromDisk() throws IOException {
+        Path path = newPath();
+        DeployJournal journal = DeployJournal.forPath(path);
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", TTL);
+        journal.recordFile(PACKAGE, "lib-1.0.pom", "bbbb", "id2", TTL);
+        journal.evict("id2");
+        journal.recordPackage("owner/repo/com.example/other/1.0", "other-abcd", getFiles(), TTL);
+        journal.recordPackage("owner/repo/com.example/gone/1.0", "gone-abcd", getFiles(), TTL);
+        journal.removePackage("owner/repo/com.example/gone/1.0");
+
+        DeployJournal reloaded = DeployJournal.forPath(copy(path));
+
+        assertEquals("id1", reloaded.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertNull(reloaded.lookupFile(PACKAGE, "lib-1.0.pom", "bbbb"));
+        assertEquals("other-abcd", reloaded.lookupPackage("owner/repo/com.example/other/1.0"));
+        assertTrue(reloaded.hasPackageFile("owner/repo/com.example/other/1.0", "lib-1.0.pom", "bbbb"));
+        assertNull(reloaded.lookupPackage("owner/repo/com.example/gone/1.0"));
+    }
+
+    @Test
+    public void skipsCorruptLines() throws IOException {
+        Path path = newPath();
+        Files.write(path, Arrays.asList(
+            "F\t" + PACKAGE + "\tlib-1.0.jar\taaaa\tid1\tnever",
+            "F\t" + PACKAGE + "\tlib-1.0.pom\tbbbb\tid2",
+            "P\t" + PACKAGE + "\tlib-abcd\tlib-1.0.jar=aaaa\t",
+            "X\tunknown",
+            "",
+            "F\t" + PACKAGE + "\tlib-1.0-sources.jar\tcccc\tid3\t" + Long.MAX_VALUE
+        ), StandardCharsets.UTF_8);
+
+        DeployJournal journal = DeployJournal.forPath(path);
+
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.jar", "aaaa"));
+        assertNull(journal.lookupFile(PACKAGE, "lib-1.0.pom", "bbbb"));
+        assertNull(journal.lookupPackage(PACKAGE));
+        assertEquals("id3", journal.lookupFile(PACKAGE, "lib-1.0-sources.jar", "cccc"));
+    }
+
+    @Test
+    public void compactsOnLoad() throws IOException {
+        Path path = newPath();
+        DeployJournal journal = DeployJournal.forPath(path);
+        journal.recordFile(PACKAGE, "lib-1.0.jar", "aaaa", "id1", TTL);
+        journal.recordPackage(PACKAGE, "lib-abcd", getFiles(), TTL);
+        journal.recordFile("owner/repo/com.example/other/1.0", "other-1.0.jar", "dddd", "id4", TTL);
+        journal.recordFile("owner/repo/com.example/other/1.0", "other-1.0.pom", "eeee", "id5", TTL);
+        journal.recordFile("owner/repo/com.example/other/1.0", "other-1.0.war", "ffff", "id6", -1);
+        journal.evict("id5");
+
+        Path copied = copy(path);
+        DeployJournal.forPath(copied).lookupPackage(PACKAGE);
+
+        List<String> lines = Files.readAllLines(copied, StandardCharsets.UTF_8);
+        assertEquals(lines.toString(), 2, lines.size());
+        assertTrue(lines.get(0).startsWith("P\t" + PACKAGE + "\tlib-abcd\t"));
+        assertTrue(lines.get(1).startsWith("F\towner/repo/com.example/other/1.0\tother-1.0.jar\tdddd\tid4\t"));
+    }
+
+    private static Map<String, String> getFiles() {
+        Map<String, String> files = new TreeMap<>();
+        files.put("lib-1.0.jar", "aaaa");
+        files.put("lib-1.0.pom", "bbbb");
+        return Collections.unmodifiableMap(files);
+    }
+
+    private Path newPath() throws IOException {
+        return this.folder.newFolder().toPath().resolve("deploy.journal");
+    }
+
+    private Path copy(Path path) throws IOException {
+        Path copied = newPath();
+        Files.copy(path, copied);
+        return copied;
+    }
+}
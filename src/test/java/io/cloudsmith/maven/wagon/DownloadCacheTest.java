@@ -0,0 +1,124 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class DownloadCacheTest {
+
+    private static final String URL = "https://dl.cloudsmith.io/public/owner/repo/maven/lib/1.0/lib-1.0.jar";
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+    private static final long LAST_MODIFIED = 1_500_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storesAndCopiesEntries() throws IOException {
+        DownloadCache cache = newCache(1024);
+        cache.store(URL, new ByteArrayInputStream(CONTENT), "\"etag\"", LAST_MODIFIED);
+
+        DownloadCache.Entry entry = cache.lookup(URL);
+        assertNotNull(entry);
+        assertEquals("\"etag\"", entry.getEtag());
+        assertEquals(DigestUtils.sha1Hex(CONTENT), entry.getSha1());
+        assertEquals(LAST_MODIFIED, entry.getLastModified());
+
+        File destination = new File(this.folder.getRoot(), "lib-1.0.jar");
+        assertTrue(cache.copyTo(entry, destination));
+        assertArrayEquals(CONTENT, Files.readAllBytes(destination.toPath()));
+        assertEquals(LAST_MODIFIED, destination.lastModified());
+    }
+
+    @Test
+    public void missesUnknownUrls() throws IOException {
+        DownloadCache cache = newCache(1024);
+        cache.store(URL, new ByteArrayInputStream(CONTENT), null, 0);
+
+        assertNull(cache.lookup(URL + ".sha1"));
+        assertNull(cache.lookup(URL).getEtag());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        DownloadCache cache = newCache(CONTENT.length * 2);
+        DownloadCache.Entry first = cache.store(URL + "/1", new ByteArrayInputStream(CONTENT), null, 0);
+        DownloadCache.Entry second = cache.store(URL + "/2", new ByteArrayInputStream(CONTENT), null, 0);
+        Files.setLastModifiedTime(first.getPath(), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(second.getPath(), FileTime.fromMillis(2_000));
+
+        /* Using the first entry makes the second the least recently used. */
+        assertNotNull(cache.lookup(URL + "/1"));
+        cache.store(URL + "/3", new ByteArrayInputStream(CONTENT), null, 0);
+
+        assertNotNull(cache.lookup(URL + "/1"));
+        assertNull(cache.lookup(URL + "/2"));
+        assertNotNull(cache.lookup(URL + "/3"));
+    }
+
+    @Test
+    public void keepsEntryLargerThanLimit() throws IOException {
+        DownloadCache cache = newCache(1);
+        cache.store(URL, new ByteArrayInputStream(CONTENT), null, 0);
+
+        assertNotNull(cache.lookup(URL));
+    }
+
+    @Test
+    public void removesCorruptEntries() throws IOException {
+        DownloadCache cache = newCache(1024);
+        DownloadCache.Entry entry = cache.store(URL, new ByteArrayInputStream(CONTENT), null, 0);
+        Files.write(entry.getPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+
+        File destination = new File(this.folder.getRoot(), "lib-1.0.jar");
+        assertFalse(cache.copyTo(entry, destination));
+        assertFalse(destination.exists());
+        assertFalse(new File(destination.getPath() + ".tmp").exists());
+        assertNull(cache.lookup(URL));
+    }
+
+    @Test
+    public void missesEvictedEntries() throws IOException {
+        DownloadCache cache = newCache(1024);
+        DownloadCache.Entry entry = cache.store(URL, new ByteArrayInputStream(CONTENT), null, 0);
+        Files.delete(entry.getPath());
+
+        assertFalse(cache.copyTo(entry, new File(this.folder.getRoot(), "lib-1.0.jar")));
+        assertNull(cache.lookup(URL));
+    }
+
+    @Test
+    public void toleratesCorruptMetadata() throws IOException {
+        Path directory = this.folder.newFolder().toPath();
+        DownloadCache cache = DownloadCache.forPath(directory, 1024);
+        DownloadCache.Entry entry = cache.store(URL, new ByteArrayInputStream(CONTENT), null, LAST_MODIFIED);
+        Path meta = directory.resolve(entry.getKey() + ".meta");
+        Files.write(meta, "garbage\nlast_modified=yesterday\n".getBytes(StandardCharsets.UTF_8));
+
+        DownloadCache.Entry reloaded = cache.lookup(URL);
+        assertNotNull(reloaded);
+        assertNull(reloaded.getSha1());
+        assertEquals(0, reloaded.getLastModified());
+    }
+
+    private DownloadCache newCache(long maxBytes) throws IOException {
+        return DownloadCache.forPath(this.folder.newFolder().toPath(), maxBytes);
+    }
+}
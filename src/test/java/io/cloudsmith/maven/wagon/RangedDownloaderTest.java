@@ -0,0 +1,178 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class RangedDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 01 Jan 2020 00:00:00 GMT";
+    private static final long LAST_MODIFIED_MILLIS = 1_577_836_800_000L;
+    private static final int CHUNK_SIZE = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[95];
+    private MockWebServer server;
+    private RangedDownloader downloader;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < this.content.length; i++) {
+            this.content[i] = (byte) i;
+        }
+
+        this.server = new MockWebServer();
+        this.server.start();
+        this.downloader = new RangedDownloader(
+            new OkHttpClient(), new RetryPolicy(1, 1, 1, 0, null), 4, CHUNK_SIZE
+        );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.shutdown();
+    }
+
+    @Test
+    public void onlyProbesLargeFiles() {
+        assertTrue(RangedDownloader.isCandidate("https://dl.example.com/lib/1.0/lib-1.0.jar"));
+        assertTrue(RangedDownloader.isCandidate("https://dl.example.com/app/1.0/app-1.0.WAR"));
+        assertFalse(RangedDownloader.isCandidate("https://dl.example.com/lib/1.0/lib-1.0.pom"));
+        assertFalse(RangedDownloader.isCandidate("https://dl.example.com/lib/1.0/lib-1.0.jar.sha1"));
+        assertFalse(RangedDownloader.isCandidate("https://dl.example.com/lib/1.0/LICENSE"));
+    }
+
+    @Test
+    public void downloadsRanges() throws IOException, InterruptedException {
+        this.server.setDispatcher(new FileDispatcher(true));
+        String url = this.server.url("/lib/1.0/lib-1.0.jar").toString();
+
+        RangedDownloader.Probe probe = this.downloader.probe(url);
+        assertEquals(this.content.length, probe.getSize());
+        assertTrue(probe.isRangeable());
+        assertEquals(ETAG, probe.getEtag());
+        assertEquals(LAST_MODIFIED_MILLIS, probe.getLastModified());
+
+        File destination = new File(this.folder.getRoot(), "lib-1.0.jar");
+        this.downloader.download(url, probe, destination);
+
+        assertArrayEquals(this.content, Files.readAllBytes(destination.toPath()));
+        assertFalse(new File(destination.getPath() + ".part").exists());
+
+        assertEquals("HEAD", this.server.takeRequest().getMethod());
+        Set<String> ranges = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            RecordedRequest request = this.server.takeRequest();
+            assertEquals(ETAG, request.getHeader("If-Range"));
+            ranges.add(request.getHeader("Range"));
+        }
+
+        assertEquals(10, ranges.size());
+        assertTrue(ranges.contains("bytes=90-94"));
+        assertEquals(11, this.server.getRequestCount());
+    }
+
+    @Test
+    public void skipsHostsWithoutRanges() throws IOException {
+        this.server.setDispatcher(new FileDispatcher(false));
+        String url = this.server.url("/lib/1.0/lib-1.0.jar").toString();
+
+        RangedDownloader.Probe probe = this.downloader.probe(url);
+        assertEquals(this.content.length, probe.getSize());
+        assertFalse(probe.isRangeable());
+        assertFalse(RangedDownloader.isCandidate(url));
+    }
+
+    @Test
+    public void failsIfRangesAreIgnored() throws IOException {
+        this.server.setDispatcher(new FileDispatcher(false));
+        String url = this.server.url("/lib/1.0/lib-1.0.jar").toString();
+        File destination = new File(this.folder.getRoot(), "lib-1.0.jar");
+
+        try {
+            this.downloader.download(url, new RangedDownloader.Probe(this.content.length, true, null, 0), destination);
+            fail("Expected a RangeNotSupportedException");
+        } catch (RangedDownloader.RangeNotSupportedException ex) {
+            /* Expected. */
+        }
+
+        assertFalse(destination.exists());
+        assertFalse(new File(destination.getPath() + ".part").exists());
+    }
+
+    @Test
+    public void doesNotProbeMissingFiles() throws IOException {
+        this.server.enqueue(new MockResponse().setResponseCode(404));
+
+        assertNull(this.downloader.probe(this.server.url("/lib/1.0/missing-1.0.jar").toString()));
+    }
+
+    /**
+     * Serves the content, with or without support for ranges.
+     */
+    private final class FileDispatcher extends Dispatcher {
+        private final boolean rangeable;
+
+        FileDispatcher(boolean rangeable) {
+            this.rangeable = rangeable;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            MockResponse response = new MockResponse()
+                .setHeader("ETag", ETAG)
+                .setHeader("Last-Modified", LAST_MODIFIED);
+
+            if (this.rangeable) {
+                response.setHeader("Accept-Ranges", "bytes");
+            }
+
+            if ("HEAD".equals(request.getMethod())) {
+                return response.setHeader("Content-Length", content.length);
+            }
+
+            Matcher range = RANGE.matcher(String.valueOf(request.getHeader("Range")));
+            if (!this.rangeable || !range.matches()) {
+                return response.setBody(new Buffer().write(content));
+            }
+
+            int start = Integer.parseInt(range.group(1));
+            int end = Math.min(content.length - 1, Integer.parseInt(range.group(2)));
+
+            return response
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                .setBody(new Buffer().write(Arrays.copyOfRange(content, start, end + 1)));
+        }
+    }
+}
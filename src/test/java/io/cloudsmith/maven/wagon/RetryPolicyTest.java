@@ -0,0 +1,169 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cloudsmith.api.ApiException;
+
+import org.junit.Test;
+
+
+public class RetryPolicyTest {
+
+    @Test
+    public void parsesRetryAfterSeconds() {
+        assertEquals(120_000, RetryPolicy.parseRetryAfterMillis("120"));
+        assertEquals(5_000, RetryPolicy.parseRetryAfterMillis(" 5 "));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("-3"));
+    }
+
+    @Test
+    public void parsesRetryAfterDate() {
+        String future = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60)
+            .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        long delay = RetryPolicy.parseRetryAfterMillis(future);
+        assertTrue("delay was " + delay, delay > 55_000 && delay <= 60_000);
+
+        String past = ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(60)
+            .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis(past));
+    }
+
+    @Test
+    public void ignoresInvalidRetryAfter() {
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis(null));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis(""));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis("soon"));
+    }
+
+    @Test
+    public void backoffIsBoundedByAttempt() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1_000, 100, null);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(policy.getDelayMillis(1, -1) <= 100);
+            assertTrue(policy.getDelayMillis(3, -1) <= 400);
+            assertTrue(policy.getDelayMillis(30, -1) <= 1_000);
+        }
+    }
+
+    @Test
+    public void retryAfterOverridesBackoffUpToCap() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1_000, 100, null);
+
+        assertEquals(7_000, policy.getDelayMillis(1, 7_000));
+        assertEquals(300_000, policy.getDelayMillis(1, 3_600_000));
+    }
+
+    @Test
+    public void retriesTransientFailures() throws ApiException {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 100, null);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.callApi("retry-transient", "test", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ApiException(503, "Service Unavailable");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        assertEquals(98, policy.getRemainingBudget());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(2, 1, 1, 100, null);
+        AtomicInteger calls = new AtomicInteger();
+
+        try {
+            policy.callApi("retry-exhausted", "test", () -> {
+                calls.incrementAndGet();
+                throw new ApiException(502, "Bad Gateway");
+            });
+            fail("Expected an ApiException");
+        } catch (ApiException ex) {
+            assertEquals(502, ex.getCode());
+        }
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 100, null);
+        AtomicInteger calls = new AtomicInteger();
+
+        try {
+            policy.callApi("retry-client-error", "test", () -> {
+                calls.incrementAndGet();
+                throw new ApiException(404, "Not Found");
+            });
+            fail("Expected an ApiException");
+        } catch (ApiException ex) {
+            assertEquals(404, ex.getCode());
+        }
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void retriesNonIdempotentCallsOnlyIfUnprocessed() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 100, null);
+
+        assertEquals(1, countAttempts(policy, "retry-create-503", new ApiException(503, "Service Unavailable")));
+        assertEquals(3, countAttempts(policy, "retry-create-429", new ApiException(429, "Too Many Requests")));
+        assertEquals(3, countAttempts(policy, "retry-create-connect", new ApiException(new ConnectException())));
+        assertEquals(1, countAttempts(policy, "retry-create-timeout", new ApiException(new SocketTimeoutException())));
+    }
+
+    @Test
+    public void stopsWhenBudgetIsSpent() {
+        RetryPolicy policy = new RetryPolicy(5, 1, 1, 1, null);
+
+        assertEquals(2, countAttempts(policy, "retry-budget-1", new ApiException(429, "Too Many Requests")));
+        assertEquals(1, countAttempts(policy, "retry-budget-2", new ApiException(429, "Too Many Requests")));
+        assertEquals(0, policy.getRemainingBudget());
+    }
+
+    @Test
+    public void honoursRetryAfterHeader() {
+        RetryPolicy policy = new RetryPolicy(2, 1, 1, 100, null);
+        Map<String, List<String>> headers = Collections.singletonMap(
+            "retry-after", Collections.singletonList("1")
+        );
+
+        long start = System.nanoTime();
+        countAttempts(policy, "retry-after-header", new ApiException(429, headers, "Slow down"));
+
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 1_000);
+    }
+
+    private static int countAttempts(RetryPolicy policy, String host, ApiException failure) {
+        AtomicInteger calls = new AtomicInteger();
+
+        try {
+            policy.callApi(host, "test", () -> {
+                calls.incrementAndGet();
+                throw failure;
+            }, false);
+            fail("Expected an ApiException");
+        } catch (ApiException ex) {
+            assertEquals(failure, ex);
+        }
+
+        return calls.get();
+    }
+}
@@ -0,0 +1,132 @@
+package io.cloudsmith.maven.wagon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class UploadIndexTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final String SHA256 = "0123abcd";
+    private static final String MD5 = "4567ef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stripsSnapshotTimestamps() {
+        assertEquals("lib-1.0-SNAPSHOT.jar", UploadIndex.getBaseName("lib-1.0-20240101.120000-3.jar"));
+        assertEquals(
+            "lib-1.0-SNAPSHOT-sources.jar",
+            UploadIndex.getBaseName("lib-1.0-20240101.120000-12-sources.jar")
+        );
+        assertEquals("lib-1.0.jar", UploadIndex.getBaseName("lib-1.0.jar"));
+        assertEquals("lib-20240101.jar", UploadIndex.getBaseName("lib-20240101.jar"));
+    }
+
+    @Test
+    public void looksUpRecordedFiles() throws IOException {
+        UploadIndex index = UploadIndex.forPath(newPath());
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", TTL);
+
+        assertEquals("id1", index.lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5));
+        assertNull(index.lookup("owner", "other", "lib-1.0.jar", SHA256, MD5));
+        assertNull(index.lookup("owner", "repo", "lib-1.1.jar", SHA256, MD5));
+        assertNull(index.lookup("owner", "repo", "lib-1.0.jar", "ffff", MD5));
+    }
+
+    @Test
+    public void matchesSnapshotsAcrossTimestamps() throws IOException {
+        UploadIndex index = UploadIndex.forPath(newPath());
+        index.record("owner", "repo", "lib-1.0-20240101.120000-1.jar", SHA256, MD5, "id1", TTL);
+
+        assertEquals("id1", index.lookup("owner", "repo", "lib-1.0-20240102.080000-2.jar", SHA256, MD5));
+    }
+
+    @Test
+    public void expiresEntries() throws IOException {
+        UploadIndex index = UploadIndex.forPath(newPath());
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", -1);
+
+        assertNull(index.lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5));
+    }
+
+    @Test
+    public void evictsByIdentifier() throws IOException {
+        UploadIndex index = UploadIndex.forPath(newPath());
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", TTL);
+        index.record("owner", "repo", "lib-1.0.pom", SHA256, MD5, "id2", TTL);
+        index.evict("id1");
+
+        assertNull(index.lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5));
+        assertEquals("id2", index.lookup("owner", "repo", "lib-1.0.pom", SHA256, MD5));
+    }
+
+    @Test
+    public void reloadsFromDisk() throws IOException {
+        Path path = newPath();
+        UploadIndex index = UploadIndex.forPath(path);
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", TTL);
+        index.record("owner", "repo", "lib-1.0.pom", SHA256, MD5, "id2", TTL);
+        index.evict("id2");
+
+        UploadIndex reloaded = UploadIndex.forPath(copy(path));
+
+        assertEquals("id1", reloaded.lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5));
+        assertNull(reloaded.lookup("owner", "repo", "lib-1.0.pom", SHA256, MD5));
+    }
+
+    @Test
+    public void compactsDroppedLinesOnLoad() throws IOException {
+        Path path = newPath();
+        UploadIndex index = UploadIndex.forPath(path);
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", TTL);
+        index.record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id2", TTL);
+        index.record("owner", "repo", "lib-1.0.pom", SHA256, MD5, "id3", -1);
+        index.record("owner", "repo", "lib-1.0.war", SHA256, MD5, "id4", TTL);
+        index.evict("id4");
+
+        Path copied = copy(path);
+        Files.write(copied, "not an entry\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        UploadIndex.forPath(copied).lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5);
+
+        String[] lines = new String(Files.readAllBytes(copied), StandardCharsets.UTF_8).split("\n");
+        assertEquals(Arrays.toString(lines), 1, lines.length);
+        assertEquals("id2", lines[0].split("\t")[1]);
+    }
+
+    @Test
+    public void doesNotRewriteCompactFile() throws IOException {
+        Path path = newPath();
+        UploadIndex.forPath(path).record("owner", "repo", "lib-1.0.jar", SHA256, MD5, "id1", TTL);
+
+        Path copied = copy(path);
+        Files.setLastModifiedTime(copied, FileTime.fromMillis(0));
+        UploadIndex.forPath(copied).lookup("owner", "repo", "lib-1.0.jar", SHA256, MD5);
+
+        assertEquals(0, Files.getLastModifiedTime(copied).toMillis());
+    }
+
+    private Path newPath() throws IOException {
+        return this.folder.newFolder().toPath().resolve("uploads.idx");
+    }
+
+    private Path copy(Path path) throws IOException {
+        Path copied = newPath();
+        Files.copy(path, copied);
+        return copied;
+    }
+}
@@ -0,0 +1,214 @@
+package io.cloudsmith.maven.wagon.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.cloudsmith.maven.wagon.CloudsmithWagon;
+import io.cloudsmith.maven.wagon.HttpClients;
+import io.cloudsmith.maven.wagon.RetryPolicy;
+import io.cloudsmith.maven.wagon.TransferMetrics;
+import io.cloudsmith.maven.wagon.TransferMetrics.Phase;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authentication.AuthenticationException;
+import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.repository.Repository;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.AuthenticationContext;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.AbstractTransporter;
+import org.eclipse.aether.spi.connector.transport.GetTask;
+import org.eclipse.aether.spi.connector.transport.PeekTask;
+import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.transfer.NoTransporterException;
+
+
+/**
+ * A Maven Resolver transporter for Cloudsmith repositories.
+ *
+ * <p>Downloads are streamed directly from the Cloudsmith CDN into the
+ * resolver (which calculates the checksums as the bytes arrive), and
+ * uploads are handed to a {@link CloudsmithWagon}, so that packages are
+ * created in exactly the same way as with the wagon. The resolver schedules
+ * the transfers itself, so several can be in progress at once.</p>
+ *
+ * <p>The resolver ignores failures when it closes a transporter, so a failure
+ * to finish the uploads of one deployment (e.g. a module) when closing is
+ * recorded, and fails the next put instead (which may be in a later
+ * deployment, with another transporter).</p>
+ */
+final class CloudsmithTransporter extends AbstractTransporter {
+
+    private static final String PREFIX = "cloudsmith+";
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_NOT_FOUND = 404;
+
+    private static final AtomicReference<ConnectionException> CLOSE_FAILURE = new AtomicReference<>();
+
+    private final CloudsmithWagon wagon;
+    private final OkHttpClient client;
+    private final TransferMetrics metrics;
+    private final RetryPolicy retryPolicy;
+
+    CloudsmithTransporter(RepositorySystemSession session, RemoteRepository repository)
+            throws NoTransporterException {
+        this.wagon = new CloudsmithWagon();
+        this.client = HttpClients.getSharedClient();
+        this.metrics = TransferMetrics.newSession();
+        this.retryPolicy = RetryPolicy.fromProperties(this.metrics);
+
+        try {
+            this.wagon.connect(
+                new Repository(repository.getId(), repository.getUrl()),
+                getAuthenticationInfo(session, repository)
+            );
+        } catch (ConnectionException | AuthenticationException ex) {
+            throw new NoTransporterException(repository, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Check if a repository is a Cloudsmith repository.
+     */
+    static boolean isSupported(RemoteRepository repository) {
+        String protocol = repository.getProtocol();
+        return protocol != null && protocol.startsWith(PREFIX);
+    }
+
+    @Override
+    public int classify(Throwable error) {
+        if (error instanceof ResourceDoesNotExistException) {
+            return ERROR_NOT_FOUND;
+        }
+
+        return ERROR_OTHER;
+    }
+
+    @Override
+    protected void implPeek(PeekTask task) throws Exception {
+        String location = task.getLocation().toString();
+
+        /* Uses the wagon's index (and its cache of missing files). */
+        if (!this.wagon.resourceExists(location)) {
+            throw new ResourceDoesNotExistException("File does not exist: " + location);
+        }
+    }
+
+    @Override
+    protected void implGet(GetTask task) throws Exception {
+        String location = task.getLocation().toString();
+        Request.Builder builder = new Request.Builder()
+            .url(this.wagon.getResourceUrl(location))
+            .get();
+
+        /* Only resume into a file, since a stream can't be appended to. */
+        boolean resume = task.getResumeOffset() > 0 && task.getDataFile() != null;
+        if (resume) {
+            builder.header("Range", "bytes=" + task.getResumeOffset() + "-");
+        }
+
+        long downloadStart = System.nanoTime();
+
+        try (Response response = this.retryPolicy.callHttp(this.client, builder.build())) {
+            checkResponse(response, location);
+
+            long length = response.body().contentLength();
+            utilGet(
+                task,
+                response.body().byteStream(),
+                true,
+                length,
+                resume && response.code() == HTTP_PARTIAL_CONTENT
+            );
+
+            this.metrics.record(Phase.DOWNLOAD, downloadStart, Math.max(length, 0));
+        } catch (IOException ex) {
+            this.metrics.recordFailure(Phase.DOWNLOAD, downloadStart);
+            throw ex;
+        }
+    }
+
+    @Override
+    protected void implPut(PutTask task) throws Exception {
+        ConnectionException closeFailure = CLOSE_FAILURE.getAndSet(null);
+        if (closeFailure != null) {
+            throw new TransferFailedException(
+                "An earlier deployment failed to complete: " + closeFailure.getMessage(), closeFailure
+            );
+        }
+
+        String location = task.getLocation().toString();
+        File source = task.getDataFile();
+        Path tempDirectory = null;
+
+        if (source == null) {
+            /* The wagon needs a file, named as it will be in the repository. */
+            tempDirectory = Files.createTempDirectory("cloudsmith-transport-");
+            source = tempDirectory.resolve(Paths.get(location).getFileName().toString()).toFile();
+
+            try (InputStream input = task.newInputStream()) {
+                Files.copy(input, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try {
+            task.getListener().transportStarted(0, task.getDataLength());
+            this.wagon.put(source, location);
+        } finally {
+            if (tempDirectory != null) {
+                Files.deleteIfExists(source.toPath());
+                Files.deleteIfExists(tempDirectory);
+            }
+        }
+    }
+
+    @Override
+    protected void implClose() {
+        try {
+            /* Waits for outstanding uploads, and reports (but can't throw) any failures. */
+            this.wagon.disconnect();
+        } catch (ConnectionException ex) {
+            System.err.println("[ERROR] " + ex.getMessage());
+            CLOSE_FAILURE.compareAndSet(null, ex);
+        }
+    }
+
+    // Helpers
+
+    private static AuthenticationInfo getAuthenticationInfo(
+            RepositorySystemSession session, RemoteRepository repository) {
+        AuthenticationInfo authInfo = new AuthenticationInfo();
+
+        try (AuthenticationContext authContext = AuthenticationContext.forRepository(session, repository)) {
+            if (authContext != null) {
+                authInfo.setUserName(authContext.get(AuthenticationContext.USERNAME));
+                authInfo.setPassword(authContext.get(AuthenticationContext.PASSWORD));
+            }
+        }
+
+        return authInfo;
+    }
+
+    private static void checkResponse(Response response, String location)
+            throws IOException, ResourceDoesNotExistException {
+        if (response.code() == HTTP_NOT_FOUND) {
+            throw new ResourceDoesNotExistException("File does not exist: " + location);
+        }
+
+        if (!response.isSuccessful()) {
+            throw new IOException("Unexpected response (" + response.code() + ") for " + location);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.cloudsmith.maven.wagon.transport;
+
+import javax.inject.Named;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.NoTransporterException;
+
+
+/**
+ * Creates transporters for Cloudsmith (<code>cloudsmith+https://</code>) repositories.
+ */
+@Named("cloudsmith")
+public final class CloudsmithTransporterFactory implements TransporterFactory {
+
+    /* Higher than the wagon transporter, so it's used instead of the wagon. */
+    private static final float PRIORITY = 10.0f;
+
+    private float priority = PRIORITY;
+
+    @Override
+    public Transporter newInstance(RepositorySystemSession session, RemoteRepository repository)
+            throws NoTransporterException {
+        if (!CloudsmithTransporter.isSupported(repository)) {
+            throw new NoTransporterException(repository);
+        }
+
+        return new CloudsmithTransporter(session, repository);
+    }
+
+    @Override
+    public float getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Set the priority of the transporter (relative to other transporters).
+     */
+    public CloudsmithTransporterFactory setPriority(float value) {
+        this.priority = value;
+        return this;
+    }
+}